@@ -0,0 +1,188 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import me.ialistannen.languageSystem.MessageProvider;
+import org.bukkit.command.CommandSender;
+import org.bukkit.permissions.Permissible;
+
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares matching an argument against every child on its own with the {@link SiblingPatterns} of the children.
+ * <p>
+ * Every child gets a pattern like "give3(?:-[0-9]+)?". The arguments miss all children, match the first one or match
+ * the last one.
+ * <p>
+ * Lives in the bench source root, which the plugin jar doesn't contain. Run it from the IDE.
+ */
+class SiblingPatternsBenchmark {
+
+	/**
+	 * Runs the benchmark
+	 *
+	 * @param args The amount of children and the amount of iterations. Optional.
+	 */
+	public static void main(String[] args) {
+		int childCount = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+		MessageProvider language = new PatternLanguage();
+		List<AbstractCommandNode> children = new ArrayList<>();
+		for (int i = 0; i < childCount; i++) {
+			children.add(new BenchmarkNode(language, "give" + i));
+		}
+		SiblingPatterns siblings = SiblingPatterns.build(children);
+		if (siblings == null) {
+			System.err.println("The patterns of the children couldn't be merged");
+			return;
+		}
+
+		String[] arguments = {"nothing", "give0", "give" + (childCount - 1) + "-42"};
+		String[] names = {"miss", "first", "last"};
+		for (int round = 0; round < 2; round++) {
+			// the first round only warms up
+			boolean print = round == 1;
+			for (int i = 0; i < arguments.length; i++) {
+				long loop = time(iterations, arguments[i], argument -> loopMatch(children, argument));
+				long merged = time(iterations, arguments[i], siblings::firstMatch);
+				if (print) {
+					System.out.printf("%-6s per child: %6d ns   merged: %6d ns%n", names[i], loop, merged);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param children The children
+	 * @param argument The argument
+	 *
+	 * @return The index of the first matching child or -1, like {@link SiblingPatterns#firstMatch(String)}
+	 */
+	private static int loopMatch(List<AbstractCommandNode> children, String argument) {
+		for (int i = 0; i < children.size(); i++) {
+			if (children.get(i).matchesPattern(argument)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param iterations The amount of iterations
+	 * @param argument   The argument to match
+	 * @param matcher    The matching to measure
+	 *
+	 * @return The average nanoseconds per match
+	 */
+	private static long time(int iterations, String argument, Matching matcher) {
+		int sink = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			sink += matcher.firstMatch(argument);
+		}
+		long elapsed = System.nanoTime() - start;
+		if (sink == Integer.MIN_VALUE) {
+			// keeps the loop from being optimized away
+			System.out.println(sink);
+		}
+		return elapsed / iterations;
+	}
+
+	/**
+	 * One way to find the first matching child
+	 */
+	@FunctionalInterface
+	private interface Matching {
+
+		/**
+		 * @param argument The argument
+		 *
+		 * @return The index of the first matching child or -1
+		 */
+		int firstMatch(String argument);
+	}
+
+	/**
+	 * A child only used for its pattern
+	 */
+	private static class BenchmarkNode extends AbstractCommandNode {
+
+		/**
+		 * @param language The language providing the pattern
+		 * @param baseKey  The base key
+		 */
+		BenchmarkNode(MessageProvider language, String baseKey) {
+			super(language, baseKey);
+		}
+
+		@Override
+		public List<String> tabComplete(CommandSender sender, String alias, List<String> wholeUserChat,
+		                                int indexRelativeToYou) {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public CommandResultType execute(CommandSender sender, String[] args) {
+			return CommandResultType.SUCCESSFUL;
+		}
+
+		@Override
+		public boolean isForbidden(Permissible permissible) {
+			return false;
+		}
+
+		@Override
+		public boolean isNotAble(CommandSender sender) {
+			return false;
+		}
+	}
+
+	/**
+	 * Translates the pattern key of a node to a regex built from its base key, all other keys to themselves
+	 */
+	private static class PatternLanguage implements MessageProvider {
+		private static final String PATTERN_SUFFIX = "_pattern";
+
+		@Override
+		public void setDefaultFilesPackage(String packageName) {
+			// nothing to read
+		}
+
+		@Override
+		public void setFileLocation(Path path) {
+			// nothing to read
+		}
+
+		@Override
+		public Locale setLanguage(Locale locale) {
+			return Locale.ENGLISH;
+		}
+
+		@Override
+		public Locale getLanguage() {
+			return Locale.ENGLISH;
+		}
+
+		@Override
+		public String tr(String key, Object... formattingObjects) {
+			if (key.endsWith(PATTERN_SUFFIX)) {
+				return key.substring(0, key.length() - PATTERN_SUFFIX.length()) + "(?:-[0-9]+)?";
+			}
+			return key;
+		}
+
+		@Override
+		public String trOrDefault(String key, String defaultString, Object... formattingObjects) {
+			return MessageFormat.format(defaultString, formattingObjects);
+		}
+
+		@Override
+		public boolean containsKey(String key) {
+			return true;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package me.ialistannen.bukkitutil.commandsystem;
 
+import me.ialistannen.bukkitutil.commandsystem.implementation.CommandRegistry;
 import org.bukkit.plugin.java.JavaPlugin;
 
 /**
@@ -10,15 +11,21 @@ public class PluginMain extends JavaPlugin {
 
 	private static PluginMain instance;
 
+	private CommandRegistry registry;
+
 	@Override
 	public void onEnable() {
 		instance = this;
+
+		registry = new CommandRegistry(this);
+		registry.register();
 	}
 
 	@Override
 	public void onDisable() {
 		// prevent the old instance from still being around.
 		instance = null;
+		registry = null;
 	}
 
 	/**
@@ -29,4 +36,13 @@ public class PluginMain extends JavaPlugin {
 	public static PluginMain getInstance() {
 		return instance;
 	}
+
+	/**
+	 * Returns the registry the plugins depending on this one add their commands to
+	 *
+	 * @return The shared command registry. Null if the plugin is disabled.
+	 */
+	public CommandRegistry getRegistry() {
+		return registry;
+	}
 }
@@ -0,0 +1,119 @@
+package me.ialistannen.bukkitutil.commandsystem.audit;
+
+import me.ialistannen.bukkitutil.commandsystem.base.CommandResultType;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * A single executed command in the audit log
+ */
+public class AuditEntry {
+
+	private final long timestamp;
+	private final String senderName;
+	private final UUID senderId;
+	private final String path;
+	private final String[] args;
+	private final CommandResultType result;
+
+	/**
+	 * @param timestamp  The time the execution started, in milliseconds since the epoch
+	 * @param senderName The name of the sender
+	 * @param senderId   The UUID of the sender, if he is an entity
+	 * @param path       The path of the node that handled the command
+	 * @param args       The arguments of the command. Not copied.
+	 * @param result     The result of the execution
+	 */
+	AuditEntry(long timestamp, @Nonnull String senderName, @Nullable UUID senderId, @Nonnull String path,
+	           @Nonnull String[] args, @Nonnull CommandResultType result) {
+		this.timestamp = timestamp;
+		this.senderName = senderName;
+		this.senderId = senderId;
+		this.path = path;
+		this.args = args;
+		this.result = result;
+	}
+
+	/**
+	 * @return The time the execution started, in milliseconds since the epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return The name of the sender
+	 */
+	@Nonnull
+	public String getSenderName() {
+		return senderName;
+	}
+
+	/**
+	 * @return The UUID of the sender, if he is an entity
+	 */
+	@Nonnull
+	public Optional<UUID> getSenderId() {
+		return Optional.ofNullable(senderId);
+	}
+
+	/**
+	 * @return The path of the node that handled the command
+	 */
+	@Nonnull
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return The arguments of the command
+	 */
+	@Nonnull
+	public String[] getArgs() {
+		return args.clone();
+	}
+
+	/**
+	 * Returns the amount of arguments
+	 *
+	 * @return The amount of arguments
+	 */
+	int getArgCount() {
+		return args.length;
+	}
+
+	/**
+	 * Returns an argument without copying the array
+	 *
+	 * @param index The index of the argument
+	 *
+	 * @return The argument
+	 */
+	String getArg(int index) {
+		return args[index];
+	}
+
+	/**
+	 * @return The result of the execution
+	 */
+	@Nonnull
+	public CommandResultType getResult() {
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "AuditEntry{" +
+				"timestamp=" + timestamp +
+				", senderName='" + senderName + '\'' +
+				", senderId=" + senderId +
+				", path='" + path + '\'' +
+				", args=" + Arrays.toString(args) +
+				", result=" + result +
+				'}';
+	}
+}
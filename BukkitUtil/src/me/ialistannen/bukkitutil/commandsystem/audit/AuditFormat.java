@@ -0,0 +1,206 @@
+package me.ialistannen.bukkitutil.commandsystem.audit;
+
+import me.ialistannen.bukkitutil.commandsystem.base.CommandResultType;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * The binary format of the audit log segments.
+ * <p>
+ * <b>Segment:</b> {@code int magic, short version, short reserved, long baseTime}, followed by the records. A record
+ * length of 0 marks the end of the written data.
+ * <p>
+ * <b>Record:</b> {@code int length}, followed by the payload: {@code varlong (timestamp - baseTime) (zig-zag), byte
+ * result, byte flags, [long, long uuid], string sender, string path, varint argCount, string... args}. Strings are
+ * a varint byte length followed by the UTF-8 bytes.
+ */
+class AuditFormat {
+
+	static final int MAGIC = 0x43415544; // "CAUD"
+	static final short VERSION = 1;
+	static final int HEADER_SIZE = 16;
+
+	private static final String SEGMENT_PREFIX = "audit-";
+	private static final String SEGMENT_SUFFIX = ".seg";
+
+	private static final int FLAG_HAS_UUID = 1;
+
+	private static final CommandResultType[] RESULTS = CommandResultType.values();
+
+	/**
+	 * @param index The index of the segment
+	 *
+	 * @return The file name of the segment
+	 */
+	static String segmentName(long index) {
+		return String.format("%s%010d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+	}
+
+	/**
+	 * @param file The file to check
+	 *
+	 * @return The index of the segment or -1 if it is no segment
+	 */
+	static long segmentIndex(Path file) {
+		String name = file.getFileName().toString();
+		if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @param buffer   The buffer to write to
+	 * @param baseTime The base time of the segment
+	 */
+	static void writeHeader(ByteBuffer buffer, long baseTime) {
+		buffer.putInt(0, MAGIC);
+		buffer.putShort(4, VERSION);
+		buffer.putShort(6, (short) 0);
+		buffer.putLong(8, baseTime);
+	}
+
+	/**
+	 * @param buffer The buffer to check
+	 *
+	 * @return True if the buffer starts with a valid header
+	 */
+	static boolean hasValidHeader(ByteBuffer buffer) {
+		return buffer.limit() >= HEADER_SIZE
+				&& buffer.getInt(0) == MAGIC
+				&& buffer.getShort(4) == VERSION;
+	}
+
+	/**
+	 * Encodes the payload of a record
+	 *
+	 * @param out      The buffer to write to
+	 * @param entry    The entry to encode
+	 * @param baseTime The base time of the segment
+	 *
+	 * @throws java.nio.BufferOverflowException if the buffer is too small
+	 */
+	static void encode(ByteBuffer out, AuditEntry entry, long baseTime) {
+		long delta = entry.getTimestamp() - baseTime;
+		writeVarLong(out, (delta << 1) ^ (delta >> 63));
+		out.put((byte) entry.getResult().ordinal());
+
+		UUID id = entry.getSenderId().orElse(null);
+		out.put((byte) (id == null ? 0 : FLAG_HAS_UUID));
+		if (id != null) {
+			out.putLong(id.getMostSignificantBits());
+			out.putLong(id.getLeastSignificantBits());
+		}
+
+		writeString(out, entry.getSenderName());
+		writeString(out, entry.getPath());
+		writeVarLong(out, entry.getArgCount());
+		for (int i = 0; i < entry.getArgCount(); i++) {
+			writeString(out, entry.getArg(i));
+		}
+	}
+
+	/**
+	 * Decodes the payload of a record
+	 *
+	 * @param in       The buffer to read from, positioned at the payload
+	 * @param baseTime The base time of the segment
+	 *
+	 * @return The decoded entry
+	 *
+	 * @throws IllegalArgumentException if the record is malformed
+	 */
+	static AuditEntry decode(ByteBuffer in, long baseTime) {
+		try {
+			long zigZag = readVarLong(in);
+			long timestamp = baseTime + ((zigZag >>> 1) ^ -(zigZag & 1));
+
+			int resultOrdinal = in.get();
+			if (resultOrdinal < 0 || resultOrdinal >= RESULTS.length) {
+				throw new IllegalArgumentException("Unknown result " + resultOrdinal);
+			}
+
+			UUID id = null;
+			if ((in.get() & FLAG_HAS_UUID) != 0) {
+				id = new UUID(in.getLong(), in.getLong());
+			}
+
+			String sender = readString(in);
+			String path = readString(in);
+			int argCount = (int) readVarLong(in);
+			if (argCount < 0 || argCount > in.remaining()) {
+				throw new IllegalArgumentException("Invalid argument count " + argCount);
+			}
+			String[] args = new String[argCount];
+			for (int i = 0; i < argCount; i++) {
+				args[i] = readString(in);
+			}
+
+			return new AuditEntry(timestamp, sender, id, path, args, RESULTS[resultOrdinal]);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated record", e);
+		}
+	}
+
+	/**
+	 * @param out    The buffer to write to
+	 * @param string The String to write
+	 */
+	private static void writeString(ByteBuffer out, String string) {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(out, bytes.length);
+		out.put(bytes);
+	}
+
+	/**
+	 * @param in The buffer to read from
+	 *
+	 * @return The read String
+	 */
+	private static String readString(ByteBuffer in) {
+		int length = (int) readVarLong(in);
+		if (length < 0 || length > in.remaining()) {
+			throw new IllegalArgumentException("Invalid string length " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param out   The buffer to write to
+	 * @param value The value to write, 7 bits per byte
+	 */
+	private static void writeVarLong(ByteBuffer out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	/**
+	 * @param in The buffer to read from
+	 *
+	 * @return The read value
+	 */
+	private static long readVarLong(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Varint too long");
+	}
+}
@@ -0,0 +1,382 @@
+package me.ialistannen.bukkitutil.commandsystem.audit;
+
+import me.ialistannen.bukkitutil.commandsystem.base.AbstractCommandNode;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandAuditSink;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandResultType;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An append only audit log for commands.
+ * <p>
+ * {@link #record(long, CommandSender, AbstractCommandNode, String[], CommandResultType)} only puts the entry in a
+ * lock-free ring buffer. A background thread drains it into memory mapped segment files in the directory, starting a
+ * new segment when the current one is full. If the buffer is full, entries are dropped and counted.
+ * <p>
+ * The format is described in {@link AuditFormat}, use {@link AuditLogReader} to read the segments.
+ */
+@SuppressWarnings("WeakerAccess")
+public class AuditLog implements CommandAuditSink, AutoCloseable {
+
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+	private static final long FORCE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final Path directory;
+	private final int segmentSize;
+	private final Predicate<CommandSender> filter;
+	private final Logger logger;
+
+	private final AtomicReferenceArray<AuditEntry> slots;
+	private final int mask;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+
+	private final Thread writerThread;
+	private volatile boolean running = true;
+
+	// only touched by the writer thread
+	private final ByteBuffer scratch;
+	private long segmentIndex;
+	private FileChannel channel;
+	private MappedByteBuffer segment;
+	private long segmentBaseTime;
+	private boolean segmentDirty;
+	private long lastForce = System.nanoTime();
+
+	/**
+	 * Opens the log, continuing the last segment in the directory
+	 *
+	 * @param directory      The directory for the segment files. Created if needed.
+	 * @param bufferCapacity The amount of entries the ring buffer can hold. Rounded up to a power of two.
+	 * @param segmentSize    The size of a single segment file in bytes
+	 * @param filter         Only commands of senders matching it are recorded
+	 * @param logger         The logger to report write errors to
+	 *
+	 * @throws IOException if the directory or the last segment couldn't be opened
+	 */
+	public AuditLog(@Nonnull Path directory, int bufferCapacity, int segmentSize,
+	                @Nonnull Predicate<CommandSender> filter, @Nonnull Logger logger) throws IOException {
+		if (segmentSize < AuditFormat.HEADER_SIZE * 2) {
+			throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.filter = filter;
+		this.logger = logger;
+
+		int capacity = Integer.highestOneBit(Math.max(2, bufferCapacity) - 1) << 1;
+		this.slots = new AtomicReferenceArray<>(capacity);
+		this.mask = capacity - 1;
+		// a record needs room for its length and the terminating 0 length in an empty segment
+		this.scratch = ByteBuffer.allocate(segmentSize - AuditFormat.HEADER_SIZE - 8);
+
+		Files.createDirectories(directory);
+		openLastSegment();
+
+		writerThread = new Thread(this::writeLoop, "Command audit writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * Records the commands of all senders with the given permission
+	 *
+	 * @param directory  The directory for the segment files
+	 * @param permission The permission staff members have
+	 * @param logger     The logger to report write errors to
+	 *
+	 * @return The opened log
+	 *
+	 * @throws IOException if the directory or the last segment couldn't be opened
+	 * @see #AuditLog(Path, int, int, Predicate, Logger)
+	 */
+	@Nonnull
+	public static AuditLog forPermission(@Nonnull Path directory, @Nonnull String permission,
+	                                     @Nonnull Logger logger) throws IOException {
+		return new AuditLog(directory, 8192, 8 * 1024 * 1024, sender -> sender.hasPermission(permission), logger);
+	}
+
+	@Override
+	public void record(long timestamp, @Nonnull CommandSender sender, @Nonnull AbstractCommandNode node,
+	                   @Nonnull String[] args, @Nonnull CommandResultType result) {
+		if (!running || !filter.test(sender)) {
+			return;
+		}
+		UUID id = sender instanceof Entity ? ((Entity) sender).getUniqueId() : null;
+		AuditEntry entry = new AuditEntry(timestamp, sender.getName(), id, node.getPath(), args.clone(), result);
+
+		long claimed;
+		do {
+			claimed = head.get();
+			if (claimed - tail.get() >= slots.length()) {
+				dropped.incrementAndGet();
+				return;
+			}
+		} while (!head.compareAndSet(claimed, claimed + 1));
+
+		slots.lazySet((int) (claimed & mask), entry);
+	}
+
+	/**
+	 * Returns the amount of entries dropped, because the buffer was full or they didn't fit in a segment
+	 *
+	 * @return The amount of dropped entries
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Returns the amount of entries written to the segments
+	 *
+	 * @return The amount of written entries
+	 */
+	public long getWrittenCount() {
+		return written.get();
+	}
+
+	/**
+	 * Stops recording, writes all remaining entries and closes the current segment
+	 */
+	@Override
+	public void close() {
+		running = false;
+		LockSupport.unpark(writerThread);
+		try {
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The loop of the writer thread
+	 */
+	private void writeLoop() {
+		while (true) {
+			boolean stopping = !running;
+			int drained = drain();
+
+			if (segmentDirty && (stopping || System.nanoTime() - lastForce >= FORCE_INTERVAL_NANOS)) {
+				segment.force();
+				segmentDirty = false;
+				lastForce = System.nanoTime();
+			}
+
+			if (stopping && drained == 0) {
+				break;
+			}
+			if (drained == 0) {
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+			}
+		}
+
+		closeSegment();
+	}
+
+	/**
+	 * Writes all published entries
+	 *
+	 * @return The amount of drained entries
+	 */
+	private int drain() {
+		int drained = 0;
+		long current = tail.get();
+
+		while (true) {
+			int index = (int) (current & mask);
+			AuditEntry entry = slots.get(index);
+			if (entry == null) {
+				break;
+			}
+			slots.lazySet(index, null);
+			current++;
+			tail.lazySet(current);
+			drained++;
+
+			try {
+				write(entry);
+			} catch (RuntimeException e) {
+				// one bad entry must not stop the writer thread
+				logger.log(Level.WARNING, "Couldn't write audit entry", e);
+				dropped.incrementAndGet();
+			}
+		}
+
+		return drained;
+	}
+
+	/**
+	 * Appends a single entry, starting a new segment if needed
+	 *
+	 * @param entry The entry to write
+	 */
+	private void write(AuditEntry entry) {
+		if (segment == null) {
+			dropped.incrementAndGet();
+			return;
+		}
+
+		if (!encode(entry)) {
+			// larger than a whole segment
+			dropped.incrementAndGet();
+			return;
+		}
+
+		// the record and the terminating 0 length
+		if (segment.remaining() < scratch.remaining() + 8) {
+			try {
+				startSegment(segmentIndex + 1);
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Couldn't start audit segment " + (segmentIndex + 1), e);
+				closeSegment();
+				dropped.incrementAndGet();
+				return;
+			}
+			// the timestamp is relative to the base time of the new segment. The scratch buffer leaves enough room
+			// in an empty segment, this just makes sure it never starts segments over and over again.
+			if (!encode(entry) || segment.remaining() < scratch.remaining() + 8) {
+				dropped.incrementAndGet();
+				return;
+			}
+		}
+
+		int start = segment.position();
+		int length = scratch.remaining();
+		segment.position(start + 4);
+		segment.put(scratch);
+		// the length last, so a partially written record is never read
+		segment.putInt(start, length);
+
+		segmentDirty = true;
+		written.incrementAndGet();
+	}
+
+	/**
+	 * Encodes the entry into the scratch buffer, relative to the base time of the current segment
+	 *
+	 * @param entry The entry to encode
+	 *
+	 * @return False if it doesn't fit in the scratch buffer
+	 */
+	private boolean encode(AuditEntry entry) {
+		scratch.clear();
+		try {
+			AuditFormat.encode(scratch, entry, segmentBaseTime);
+		} catch (BufferOverflowException e) {
+			return false;
+		}
+		scratch.flip();
+		return true;
+	}
+
+	/**
+	 * Continues the last segment or starts the first one
+	 *
+	 * @throws IOException if the segment couldn't be opened
+	 */
+	private void openLastSegment() throws IOException {
+		List<Path> segments = AuditLogReader.listSegments(directory);
+		if (segments.isEmpty()) {
+			startSegment(0);
+			return;
+		}
+
+		Path last = segments.get(segments.size() - 1);
+		long index = AuditFormat.segmentIndex(last);
+
+		FileChannel lastChannel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (lastChannel.size() != segmentSize) {
+			lastChannel.close();
+			startSegment(index + 1);
+			return;
+		}
+
+		MappedByteBuffer buffer = lastChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		if (!AuditFormat.hasValidHeader(buffer)) {
+			lastChannel.close();
+			startSegment(index + 1);
+			return;
+		}
+
+		int position = AuditFormat.HEADER_SIZE;
+		while (position + 4 <= segmentSize) {
+			int length = buffer.getInt(position);
+			if (length <= 0 || position + 4 + length > segmentSize) {
+				break;
+			}
+			position += 4 + length;
+		}
+		buffer.position(position);
+
+		channel = lastChannel;
+		segment = buffer;
+		segmentIndex = index;
+		segmentBaseTime = buffer.getLong(8);
+	}
+
+	/**
+	 * Closes the current segment and starts a new one
+	 *
+	 * @param index The index of the new segment
+	 *
+	 * @throws IOException if the segment couldn't be created
+	 */
+	private void startSegment(long index) throws IOException {
+		closeSegment();
+
+		Path file = directory.resolve(AuditFormat.segmentName(index));
+		FileChannel newChannel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		MappedByteBuffer buffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+
+		segmentBaseTime = System.currentTimeMillis();
+		AuditFormat.writeHeader(buffer, segmentBaseTime);
+		buffer.position(AuditFormat.HEADER_SIZE);
+
+		channel = newChannel;
+		segment = buffer;
+		segmentIndex = index;
+	}
+
+	/**
+	 * Flushes and closes the current segment, if any
+	 */
+	private void closeSegment() {
+		if (segment != null) {
+			segment.force();
+			segment = null;
+			segmentDirty = false;
+		}
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Couldn't close audit segment " + segmentIndex, e);
+			}
+			channel = null;
+		}
+	}
+}
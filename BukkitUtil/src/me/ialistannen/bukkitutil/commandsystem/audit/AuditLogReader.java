@@ -0,0 +1,147 @@
+package me.ialistannen.bukkitutil.commandsystem.audit;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads the segments written by an {@link AuditLog}.
+ * <p>
+ * Can also be run from the command line:
+ * <br>{@code java -cp <jar> me.ialistannen.bukkitutil.commandsystem.audit.AuditLogReader <directory>
+ * [--sender=<name>] [--node=<path>] [--since=<epoch millis>]}
+ */
+@SuppressWarnings("WeakerAccess")
+public class AuditLogReader {
+
+	/**
+	 * Lists all segments in the directory
+	 *
+	 * @param directory The directory of the log
+	 *
+	 * @return All segment files, oldest first
+	 *
+	 * @throws IOException if the directory couldn't be read
+	 */
+	@Nonnull
+	public static List<Path> listSegments(@Nonnull Path directory) throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return Collections.emptyList();
+		}
+		try (Stream<Path> files = Files.list(directory)) {
+			return files
+					.filter(path -> AuditFormat.segmentIndex(path) >= 0)
+					.sorted(Comparator.comparingLong(AuditFormat::segmentIndex))
+					.collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Streams all entries of all segments, oldest first
+	 *
+	 * @param directory The directory of the log
+	 * @param filter    The filter the entries must match
+	 * @param consumer  The consumer for the matching entries
+	 *
+	 * @throws IOException if a segment couldn't be read
+	 */
+	public static void read(@Nonnull Path directory, @Nonnull Predicate<AuditEntry> filter,
+	                        @Nonnull Consumer<AuditEntry> consumer) throws IOException {
+		for (Path segment : listSegments(directory)) {
+			readSegment(segment, filter, consumer);
+		}
+	}
+
+	/**
+	 * Streams all entries of a single segment. Stops at the first malformed record.
+	 *
+	 * @param segment  The segment file
+	 * @param filter   The filter the entries must match
+	 * @param consumer The consumer for the matching entries
+	 *
+	 * @throws IOException if the segment couldn't be read or has no valid header
+	 */
+	public static void readSegment(@Nonnull Path segment, @Nonnull Predicate<AuditEntry> filter,
+	                               @Nonnull Consumer<AuditEntry> consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (!AuditFormat.hasValidHeader(buffer)) {
+				throw new IOException("Not an audit segment: " + segment);
+			}
+			long baseTime = buffer.getLong(8);
+
+			int position = AuditFormat.HEADER_SIZE;
+			while (position + 4 <= buffer.limit()) {
+				int length = buffer.getInt(position);
+				if (length <= 0 || position + 4 + length > buffer.limit()) {
+					return;
+				}
+
+				ByteBuffer record = buffer.duplicate();
+				record.position(position + 4).limit(position + 4 + length);
+
+				AuditEntry entry;
+				try {
+					entry = AuditFormat.decode(record, baseTime);
+				} catch (IllegalArgumentException e) {
+					return;
+				}
+				if (filter.test(entry)) {
+					consumer.accept(entry);
+				}
+
+				position += 4 + length;
+			}
+		}
+	}
+
+	/**
+	 * Prints the matching entries
+	 *
+	 * @param args The directory and the filters
+	 *
+	 * @throws IOException if the log couldn't be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: <directory> [--sender=<name>] [--node=<path>] [--since=<epoch millis>]");
+			return;
+		}
+
+		Predicate<AuditEntry> filter = entry -> true;
+		for (String argument : Arrays.copyOfRange(args, 1, args.length)) {
+			if (argument.startsWith("--sender=")) {
+				String sender = argument.substring("--sender=".length());
+				filter = filter.and(entry -> entry.getSenderName().equalsIgnoreCase(sender));
+			} else if (argument.startsWith("--node=")) {
+				String node = argument.substring("--node=".length());
+				filter = filter.and(entry -> entry.getPath().equals(node));
+			} else if (argument.startsWith("--since=")) {
+				long since = Long.parseLong(argument.substring("--since=".length()));
+				filter = filter.and(entry -> entry.getTimestamp() >= since);
+			}
+		}
+
+		read(Paths.get(args[0]), filter, entry -> System.out.println(
+				Instant.ofEpochMilli(entry.getTimestamp())
+						+ " " + entry.getSenderName()
+						+ " " + entry.getPath()
+						+ " " + entry.getResult()
+						+ " " + String.join(" ", entry.getArgs())));
+	}
+}
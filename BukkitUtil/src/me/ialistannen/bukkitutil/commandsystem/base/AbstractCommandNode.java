@@ -1,5 +1,6 @@
 package me.ialistannen.bukkitutil.commandsystem.base;
 
+import me.ialistannen.bukkitutil.other.CaseFolding;
 import me.ialistannen.languageSystem.MessageProvider;
 import org.bukkit.command.CommandSender;
 
@@ -11,11 +12,13 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -23,9 +26,21 @@ import java.util.stream.Collectors;
  */
 public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccessRestrictable {
 
+	private static final OrdinalPool ORDINALS = new OrdinalPool();
+	private static final String[] NO_ARGUMENTS = new String[0];
+
 	protected final MessageProvider language;
 	private final String BASE_KEY;
+	private final int ordinal = ORDINALS.acquire(this);
+	private final int hashCode;
+	private final Map<Locale, NodeMetadata> metadata = new ConcurrentHashMap<>();
+	private volatile NodeMetadata lastMetadata;
 	private final Set<AbstractCommandNode> children = new HashSet<>();
+	private volatile ChildrenVersion childrenVersions;
+	private volatile SiblingPatterns childPatterns;
+	private volatile AbstractCommandNode parent;
+	private final CommandResult[] results = new CommandResult[CommandResultType.values().length];
+	private final FindCommandResult[] failedFinds = new FindCommandResult[CommandResultType.values().length];
 
 	/**
 	 * Constructs a command.
@@ -37,6 +52,7 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 	public AbstractCommandNode(@Nonnull MessageProvider language, @Nonnull String baseKey) {
 		this.language = language;
 		this.BASE_KEY = baseKey;
+		this.hashCode = Objects.hash(BASE_KEY);
 	}
 
 	/**
@@ -51,6 +67,121 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 	public AbstractCommandNode(@Nonnull MessageProvider language) {
 		this.language = language;
 		this.BASE_KEY = getClass().getSimpleName();
+		this.hashCode = Objects.hash(BASE_KEY);
+	}
+
+	/**
+	 * Returns the base key of this command
+	 *
+	 * @return The base key for the language. Identifies the node.
+	 */
+	public String getBaseKey() {
+		return BASE_KEY;
+	}
+
+	/**
+	 * Returns the path of this node
+	 * <p>
+	 * The base keys of all parents and this node, separated by a '/'. The {@link CommandRoot} is left out. Unlike the
+	 * base key, this is unique in a tree, e.g. for the help commands every top level command gets.
+	 *
+	 * @return The path of this node in its tree. Just the base key, if it has no parent.
+	 */
+	@Nonnull
+	public String getPath() {
+		AbstractCommandNode parent = this.parent;
+		return parent == null ? BASE_KEY : parent.getChildPath(BASE_KEY);
+	}
+
+	/**
+	 * Returns the path a child of this node has
+	 *
+	 * @param childBaseKey The base key of the child
+	 *
+	 * @return The path of the child, even if it isn't added yet
+	 */
+	String getChildPath(@Nonnull String childBaseKey) {
+		return this instanceof CommandRoot ? childBaseKey : getPath() + "/" + childBaseKey;
+	}
+
+	/**
+	 * Returns the parent of this node
+	 *
+	 * @return The node this one was last added to or null if it has none
+	 */
+	@Nullable
+	@SuppressWarnings("unused")
+	public AbstractCommandNode getParent() {
+		return parent;
+	}
+
+	/**
+	 * Returns the ordinal of this node.
+	 * <p>
+	 * No two living nodes share one. They count up from 0, and the ordinal of a garbage collected node is given to the
+	 * next new one, so they stay dense. Use it to index arrays, e.g. with an {@link OrdinalTable}.
+	 *
+	 * @return The ordinal of this node
+	 *
+	 * @see #getOrdinalBound()
+	 */
+	public int getOrdinal() {
+		return ordinal;
+	}
+
+	/**
+	 * Returns an upper bound for the ordinals of all nodes created so far
+	 *
+	 * @return The largest ordinal handed out so far, plus one
+	 */
+	@SuppressWarnings("unused")
+	public static int getOrdinalBound() {
+		return ORDINALS.getBound();
+	}
+
+	/**
+	 * Returns the translated information in the current locale, resolving it if this locale is new
+	 *
+	 * @return The information of this node in the current language
+	 */
+	@Nonnull
+	public NodeMetadata getMetadata() {
+		Locale locale = language.getLanguage() == null ? Locale.ROOT : language.getLanguage();
+		NodeMetadata last = lastMetadata;
+		if (last != null && last.getLocale().equals(locale)) {
+			return last;
+		}
+
+		last = metadata.computeIfAbsent(locale, this::resolveMetadata);
+		lastMetadata = last;
+		return last;
+	}
+
+	/**
+	 * Forgets the resolved information. Call it after the language files were reloaded.
+	 */
+	@SuppressWarnings("WeakerAccess")
+	public void invalidateMetadata() {
+		metadata.clear();
+		lastMetadata = null;
+	}
+
+	/**
+	 * Uses already resolved information, e.g. read from a {@link TreeImage}, instead of translating it again
+	 *
+	 * @param seeded The information. Ignored if the locale is already resolved.
+	 */
+	void seedMetadata(@Nonnull NodeMetadata seeded) {
+		metadata.putIfAbsent(seeded.getLocale(), seeded);
+	}
+
+	/**
+	 * @param locale The current locale
+	 *
+	 * @return The information of this node in that locale
+	 */
+	private NodeMetadata resolveMetadata(Locale locale) {
+		return NodeMetadata.resolve(language, BASE_KEY, locale);
 	}
 
 	/**
@@ -59,7 +190,7 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 	 * @return The usage of the command
 	 */
 	public String getUsage() {
-		return language.tr(CommandInformationKey.USAGE.applyTo(BASE_KEY));
+		return getMetadata().getUsage();
 	}
 
 	/**
@@ -68,7 +199,7 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 	 * @return The description of the command
 	 */
 	public String getDescription() {
-		return language.tr(CommandInformationKey.DESCRIPTION.applyTo(BASE_KEY));
+		return getMetadata().getDescription();
 	}
 
 	/**
@@ -77,7 +208,7 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 	 * @return The name of the command
 	 */
 	public String getName() {
-		return language.tr(CommandInformationKey.NAME.applyTo(BASE_KEY));
+		return getMetadata().getName();
 	}
 
 	/**
@@ -87,7 +218,21 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 	 */
 	@SuppressWarnings("WeakerAccess")
 	public String getKeyword() {
-		return language.tr(CommandInformationKey.KEYWORD.applyTo(BASE_KEY));
+		return getMetadata().getKeyword();
+	}
+
+	/**
+	 * Returns the permission {@link #isForbidden(org.bukkit.permissions.Permissible)} checks.
+	 * <p>
+	 * Only return one if the check depends on nothing else. It is used to share the result of the access checks
+	 * between senders with the same permissions.
+	 *
+	 * @return The single permission needed to use this command, an empty String for none or null if the check is
+	 * more complex
+	 */
+	@Nullable
+	public String getRequiredPermission() {
+		return null;
 	}
 
 	/**
@@ -99,11 +244,7 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 	 */
 	@SuppressWarnings("WeakerAccess")
 	public boolean matchesPattern(@Nullable String string) {
-		return string != null
-				&& Pattern
-				.compile(language.tr(CommandInformationKey.PATTERN.applyTo(BASE_KEY)), Pattern.CASE_INSENSITIVE)
-				.matcher(string)
-				.matches();
+		return getMetadata().matches(string);
 	}
 
 
@@ -114,12 +255,13 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 	 * @param alias       The used alias for the command
 	 * @param currentArgs The current arguments. Used for recursive iterating.
 	 * @param args        The args the user entered
+	 * @param context     The context performing the pattern and access checks
 	 *
 	 * @return A list with valid completions. Empty for none, null for all online, visible players
 	 */
 	private FindTabCompleteResult doTabComplete(@Nonnull CommandSender sender, @Nonnull String alias,
 	                                            @Nonnull Queue<String> currentArgs,
-	                                            @Nonnull String[] args) {
+	                                            @Nonnull String[] args, @Nonnull ResolutionContext context) {
 
 		// don't poll the first if it is the root. Make the root transparent
 		String currentString = (this instanceof CommandRoot) ? "" : currentArgs.poll();
@@ -128,11 +270,7 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 		if (args.length <= 1) {
 			if (this instanceof CommandRoot) {
 				return new FindTabCompleteResult(
-						chooseStartingWith(getChildren().stream()
-										.filter(child -> !child.isForbidden(sender) && !child.isNotAble(sender))
-										.map(AbstractCommandNode::getKeyword)
-										.collect(Collectors.toList()),
-								lastString),
+						chooseStartingWith(context.getUsableKeywords(this, sender), lastString),
 						CommandResultType.SUCCESSFUL);
 			} else {
 				return new FindTabCompleteResult(Collections.singletonList(getKeyword()),
@@ -149,23 +287,21 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 		//                  arg1 arg2
 		// CurrentString:    ^                  ==> Complete yourself
 
-		if (matchesPattern(currentString) || (this instanceof CommandRoot)) {
+		if ((this instanceof CommandRoot) || context.matches(this, currentString)) {
 			if (currentArgs.size() >= 1) {
-				for (AbstractCommandNode child : getChildren()) {
+				for (AbstractCommandNode child : context.getChildren(this)) {
 					FindTabCompleteResult childResult = child
 							// !pass a copy of the queue!
-							.doTabComplete(sender, alias, new ArrayDeque<>(currentArgs), args);
+							.doTabComplete(sender, alias, new ArrayDeque<>(currentArgs), args, context);
 
 					if (childResult.getResult() == CommandResultType.SUCCESSFUL) {
 						return childResult;
 					}
 				}
 
-				if (isForbidden(sender)) {
-					return new FindTabCompleteResult(Collections.emptyList(), CommandResultType.PERMISSION_DENIED);
-				}
-				if (isNotAble(sender)) {
-					return new FindTabCompleteResult(Collections.emptyList(), CommandResultType.WRONG_SENDER);
+				CommandResultType access = context.checkAccess(this, sender);
+				if (access != CommandResultType.SUCCESSFUL) {
+					return new FindTabCompleteResult(Collections.emptyList(), access);
 				}
 
 				return new FindTabCompleteResult(
@@ -194,7 +330,22 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 	 */
 	final FindTabCompleteResult doTabComplete(@Nonnull CommandSender sender, @Nonnull String alias,
 	                                          @Nonnull String[] args) {
-		return doTabComplete(sender, alias, new ArrayDeque<>(Arrays.asList(args)), args);
+		return doTabComplete(sender, alias, args, ResolutionContext.DIRECT);
+	}
+
+	/**
+	 * Performs the tab completion by delegating it to a child
+	 *
+	 * @param sender  The {@link CommandSender}
+	 * @param alias   The used alias for the command
+	 * @param args    The args the user entered
+	 * @param context The context performing the pattern and access checks
+	 *
+	 * @return A list with valid completions. Empty for none, null for all online, visible players
+	 */
+	final FindTabCompleteResult doTabComplete(@Nonnull CommandSender sender, @Nonnull String alias,
+	                                          @Nonnull String[] args, @Nonnull ResolutionContext context) {
+		return doTabComplete(sender, alias, new ArrayDeque<>(Arrays.asList(args)), args, context);
 	}
 
 	/**
@@ -210,7 +361,7 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 			return choices;
 		}
 		return choices.stream()
-				.filter(s -> s.toLowerCase().startsWith(startingWith.toLowerCase()))
+				.filter(s -> CaseFolding.startsWithIgnoreCase(s, startingWith))
 				.collect(Collectors.toList());
 	}
 
@@ -223,35 +374,101 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 	 * @return The command or an empty optional
 	 */
 	FindCommandResult find(Queue<String> args, CommandSender sender) {
-		String currentArgs = this instanceof CommandRoot ? "" : args.poll();
+		return find(args, sender, ResolutionContext.DIRECT);
+	}
 
-		FindCommandResult result = new FindCommandResult(this, new ArrayDeque<>(args), CommandResultType.NOT_FOUND);
-		if (matchesPattern(currentArgs) || (this instanceof CommandRoot)) {
-			// now we at least found this matching command
-			result = new FindCommandResult(this, new ArrayDeque<>(args), CommandResultType.SUCCESSFUL);
+	/**
+	 * Tries to find a command using recursion
+	 *
+	 * @param args    The arguments to find the command for
+	 * @param sender  The sender to find it for
+	 * @param context The context performing the pattern and access checks
+	 *
+	 * @return The command or an empty optional
+	 */
+	FindCommandResult find(Queue<String> args, CommandSender sender, ResolutionContext context) {
+		String[] arguments = args.toArray(new String[args.size()]);
+		FoundCommand found = locate(arguments, !(this instanceof CommandRoot), sender, context);
+		AbstractCommandNode node = found.take();
 
-			if (isNotAble(sender)) {
-				return new FindCommandResult(this, new ArrayDeque<>(args), CommandResultType.WRONG_SENDER);
-			} else if (isForbidden(sender)) {
-				return new FindCommandResult(this, new ArrayDeque<>(args), CommandResultType.PERMISSION_DENIED);
-			} else {
-				FindCommandResult tmpChildResult = null;
-				for (AbstractCommandNode commandNode : getChildren()) {
-					FindCommandResult childResult = commandNode.find(new ArrayDeque<>(args), sender);
-					if (childResult.getResult() == CommandResultType.SUCCESSFUL) {
-						return childResult;
-					} else if (childResult.getResult() != CommandResultType.NOT_FOUND) {
-						tmpChildResult = childResult;
-					}
-				}
+		if (found.result != CommandResultType.SUCCESSFUL) {
+			return node.failedFind(found.result);
+		}
+		return node.new FindCommandResult(Arrays.copyOfRange(arguments, found.consumed, arguments.length),
+				CommandResultType.SUCCESSFUL);
+	}
 
-				if (tmpChildResult != null) {
-					result = tmpChildResult;
+	/**
+	 * Finds the command and writes where it ended up into the holder of the current thread
+	 *
+	 * @param args        The arguments to find the command for
+	 * @param hasArgument False if this node was already matched, so the arguments start with the ones for its
+	 *                    children
+	 * @param sender      The sender to find it for
+	 * @param context     The context performing the pattern and access checks
+	 *
+	 * @return The holder of the current thread. Read it before finding the next command.
+	 */
+	private FoundCommand locate(String[] args, boolean hasArgument, CommandSender sender,
+	                            ResolutionContext context) {
+		FoundCommand found = FoundCommand.CURRENT.get();
+		locate(args, 0, hasArgument, false, sender, context, found);
+		return found;
+	}
+
+	/**
+	 * Tries to find a command using recursion
+	 *
+	 * @param args    The arguments to find the command for
+	 * @param index       The index of the argument for this node
+	 * @param hasArgument False if this node was already matched before resolving and uses no argument
+	 * @param matched     True if the argument is already known to match
+	 * @param sender      The sender to find it for
+	 * @param context     The context performing the pattern and access checks
+	 * @param found       The holder to write the found command to
+	 */
+	private void locate(String[] args, int index, boolean hasArgument, boolean matched, CommandSender sender,
+	                    ResolutionContext context, FoundCommand found) {
+		String currentArg = !hasArgument || index >= args.length ? null : args[index];
+		int consumed = hasArgument ? index + 1 : index;
+
+		if (hasArgument && !matched && !context.matches(this, currentArg)) {
+			found.set(this, CommandResultType.NOT_FOUND, consumed);
+			return;
+		}
+
+		CommandResultType access = context.checkAccess(this, sender);
+		if (access != CommandResultType.SUCCESSFUL) {
+			found.set(this, access, consumed);
+			return;
+		}
+
+		// now we at least found this matching command
+		AbstractCommandNode failedNode = this;
+		CommandResultType failedResult = CommandResultType.SUCCESSFUL;
+
+		SiblingPatterns siblings = context.getChildPatterns(this);
+		int firstMatch = siblings == null ? -1 : siblings.firstMatch(consumed < args.length ? args[consumed] : null);
+		for (AbstractCommandNode commandNode : context.getChildren(this)) {
+			boolean childMatched = false;
+			if (siblings != null) {
+				int childIndex = siblings.indexOf(commandNode);
+				if (childIndex >= 0 && (firstMatch < 0 || childIndex < firstMatch)) {
+					// the merged pattern didn't match it
+					continue;
 				}
+				childMatched = childIndex >= 0 && childIndex == firstMatch;
+			}
+			commandNode.locate(args, consumed, true, childMatched, sender, context, found);
+			if (found.result == CommandResultType.SUCCESSFUL) {
+				return;
+			} else if (found.result != CommandResultType.NOT_FOUND) {
+				failedNode = found.node;
+				failedResult = found.result;
 			}
 		}
-
-		return result;
+		// a more specific failure of a child wins over running this node
+		found.set(failedNode, failedResult, consumed);
 	}
 
 	/**
@@ -263,14 +480,84 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 	 * @return The CommandResult
 	 */
 	CommandResult executeCommand(CommandSender sender, String... args) {
-		FindCommandResult cmd = find(new ArrayDeque<>(Arrays.asList(args)), sender);
+		return executeCommand(sender, ResolutionContext.DIRECT, !(this instanceof CommandRoot), args);
+	}
 
-		String[] remainingArgs = cmd.getRemainingArguments().toArray(new String[cmd.getRemainingArguments().size()]);
+	/**
+	 * Executes the command, by finding the responsible node and passing it to him
+	 *
+	 * @param sender      The sender of the command
+	 * @param context     The context performing the pattern and access checks
+	 * @param hasArgument False if this node was already matched, so the arguments start with the ones for its
+	 *                    children
+	 * @param args        The arguments of the command
+	 *
+	 * @return The CommandResult
+	 */
+	CommandResult executeCommand(CommandSender sender, ResolutionContext context, boolean hasArgument,
+	                             String... args) {
+		FoundCommand found = locate(args, hasArgument, sender, context);
+		CommandResultType result = found.result;
+		int consumed = found.consumed;
+		// the command may execute other commands, which reuse the holder
+		AbstractCommandNode node = found.take();
+
+		if (result != CommandResultType.SUCCESSFUL) {
+			return node.resultOf(result);
+		}
+		return node.resultOf(node.execute(sender, Arrays.copyOfRange(args, consumed, args.length)));
+	}
+
+	/**
+	 * Executes an already found command
+	 *
+	 * @param cmd    The result of {@link #find(Queue, CommandSender)}
+	 * @param sender The sender of the command
+	 *
+	 * @return The CommandResult
+	 */
+	static CommandResult executeFound(FindCommandResult cmd, CommandSender sender) {
+		AbstractCommandNode node = cmd.getCommandNode();
 		if (cmd.getResult() == CommandResultType.SUCCESSFUL) {
-			return new CommandResult(cmd.getCommandNode(), cmd.getCommandNode().execute(sender, remainingArgs));
+			return node.resultOf(node.execute(sender, cmd.getRemainingArguments()));
 		}
 
-		return new CommandResult(cmd.getCommandNode(), cmd.getResult());
+		return node.resultOf(cmd.getResult());
+	}
+
+	/**
+	 * Returns the result of this node with the given type. The results are immutable, so every node has one of each.
+	 *
+	 * @param type The type of the result
+	 *
+	 * @return The result
+	 */
+	@Nonnull
+	CommandResult resultOf(@Nonnull CommandResultType type) {
+		CommandResult result = results[type.ordinal()];
+		if (result == null) {
+			// racing threads create equal results, keeping either is fine
+			result = new CommandResult(this, type);
+			results[type.ordinal()] = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the failed find result of this node with the given type
+	 *
+	 * @param type The type of the result. Not {@link CommandResultType#SUCCESSFUL}.
+	 *
+	 * @return The result. It has no remaining arguments, as nothing is executed.
+	 */
+	@Nonnull
+	private FindCommandResult failedFind(@Nonnull CommandResultType type) {
+		FindCommandResult result = failedFinds[type.ordinal()];
+		if (result == null) {
+			result = new FindCommandResult(NO_ARGUMENTS, type);
+			failedFinds[type.ordinal()] = result;
+		}
+		return result;
 	}
 
 	/**
@@ -281,6 +568,7 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 	@SuppressWarnings("WeakerAccess")
 	protected void addChild(AbstractCommandNode child) {
 		children.add(child);
+		child.parent = this;
 	}
 
 	/**
@@ -290,7 +578,9 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 	 */
 	@SuppressWarnings("WeakerAccess")
 	protected void removeChild(AbstractCommandNode child) {
-		children.remove(child);
+		if (children.remove(child) && child.parent == this) {
+			child.parent = null;
+		}
 	}
 
 	/**
@@ -315,6 +605,42 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 		return Collections.unmodifiableSet(children);
 	}
 
+	/**
+	 * Returns the versions of the children, set by the {@link CommandTree}
+	 *
+	 * @return The newest version or null if the children were never changed through the tree
+	 */
+	ChildrenVersion getChildrenVersions() {
+		return childrenVersions;
+	}
+
+	/**
+	 * Sets the versions of the children
+	 *
+	 * @param childrenVersions The newest version
+	 */
+	void setChildrenVersions(ChildrenVersion childrenVersions) {
+		this.childrenVersions = childrenVersions;
+	}
+
+	/**
+	 * Returns the merged patterns of the children, set by the {@link CommandTree}
+	 *
+	 * @return The merged patterns or null if they aren't merged
+	 */
+	SiblingPatterns getChildPatterns() {
+		return childPatterns;
+	}
+
+	/**
+	 * Sets the merged patterns of the children
+	 *
+	 * @param childPatterns The merged patterns. Null to check every child on its own.
+	 */
+	void setChildPatterns(SiblingPatterns childPatterns) {
+		this.childPatterns = childPatterns;
+	}
+
 	/**
 	 * Returns ALL the children, meaning the children and their children and so on
 	 *
@@ -336,21 +662,16 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 	 */
 	protected class FindCommandResult {
 
-		private final AbstractCommandNode commandNode;
-
-		private final Queue<String> remainingArguments;
+		private final String[] remainingArguments;
 
 		private final CommandResultType result;
 
 		/**
-		 * @param commandNode        The command node
 		 * @param remainingArguments The remaining arguments
 		 * @param result             The CommandResultType (for permission, sender and not found)
 		 */
 		@SuppressWarnings("unused")
-		FindCommandResult(@Nonnull AbstractCommandNode commandNode, @Nonnull Queue<String> remainingArguments,
-		                  @Nonnull CommandResultType result) {
-			this.commandNode = commandNode;
+		FindCommandResult(@Nonnull String[] remainingArguments, @Nonnull CommandResultType result) {
 			this.remainingArguments = remainingArguments;
 			this.result = result;
 		}
@@ -370,19 +691,52 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 		 * @return The command node if any
 		 */
 		public AbstractCommandNode getCommandNode() {
-			return commandNode;
+			return AbstractCommandNode.this;
 		}
 
 		/**
-		 * Returns the remaining arguments
+		 * Returns the remaining arguments. Shared, don't modify them.
 		 *
 		 * @return The remaining arguments. May be empty.
 		 */
-		Queue<String> getRemainingArguments() {
+		String[] getRemainingArguments() {
 			return remainingArguments;
 		}
 	}
 
+	/**
+	 * Where the last find of a thread ended up. One per thread, so resolving doesn't create a result per level.
+	 */
+	private static class FoundCommand {
+		private static final ThreadLocal<FoundCommand> CURRENT = ThreadLocal.withInitial(FoundCommand::new);
+
+		private AbstractCommandNode node;
+		private CommandResultType result;
+		private int consumed;
+
+		/**
+		 * @param node     The node
+		 * @param result   The result
+		 * @param consumed The amount of arguments used to find the node
+		 */
+		void set(AbstractCommandNode node, CommandResultType result, int consumed) {
+			this.node = node;
+			this.result = result;
+			this.consumed = consumed;
+		}
+
+		/**
+		 * Returns the node and forgets it, so the thread doesn't keep it alive
+		 *
+		 * @return The found node
+		 */
+		AbstractCommandNode take() {
+			AbstractCommandNode found = node;
+			node = null;
+			return found;
+		}
+	}
+
 	/**
 	 * The result of the tab complete method
 	 */
@@ -437,6 +791,6 @@ public abstract class AbstractCommandNode implements BukkitCommand, BukkitAccess
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(BASE_KEY);
+		return hashCode;
 	}
 }
@@ -0,0 +1,134 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTree.ChangeSetListener;
+import me.ialistannen.bukkitutil.commandsystem.util.CommandSystemUtil;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Collects the changes of an edit of a {@link CommandTree} and hands them to the {@link ChangeSetListener}s, each on
+ * its own executor.
+ * <p>
+ * Every listener gets its change sets in order, one at a time. Sets queued while it is still busy are merged into
+ * one, so a slow listener sees fewer, bigger sets.
+ */
+class ChangeSetDispatcher {
+
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+	private final List<TreeChangeSet.Change> pending = new ArrayList<>();
+	private long sequence;
+
+	/**
+	 * @param listener The listener to add
+	 * @param executor The executor to call it on
+	 */
+	void subscribe(@Nonnull ChangeSetListener listener, @Nonnull Executor executor) {
+		subscriptions.add(new Subscription(listener, executor));
+	}
+
+	/**
+	 * @param listener The listener to remove
+	 */
+	void unsubscribe(@Nonnull ChangeSetListener listener) {
+		subscriptions.removeIf(subscription -> subscription.listener == listener);
+	}
+
+	/**
+	 * Records a change of the running edit. Does nothing if nobody listens.
+	 *
+	 * @param reason Whether the child was added or removed
+	 * @param parent The parent node
+	 * @param child  The child node
+	 */
+	void record(CommandTree.InvalidationReason reason, AbstractCommandNode parent, AbstractCommandNode child) {
+		if (subscriptions.isEmpty()) {
+			return;
+		}
+		pending.add(new TreeChangeSet.Change(reason, parent, child));
+	}
+
+	/**
+	 * Delivers the recorded changes, unless they all cancel out
+	 *
+	 * @param treeVersion The version the changes were published as
+	 */
+	void publish(long treeVersion) {
+		if (pending.isEmpty()) {
+			return;
+		}
+		TreeChangeSet changeSet = TreeChangeSet.of(sequence + 1, treeVersion, pending);
+		pending.clear();
+		if (changeSet.isEmpty()) {
+			return;
+		}
+		sequence++;
+		for (Subscription subscription : subscriptions) {
+			subscription.offer(changeSet);
+		}
+	}
+
+	/**
+	 * A listener, its executor and the change sets it hasn't got yet
+	 */
+	private static class Subscription {
+		private final ChangeSetListener listener;
+		private final Executor executor;
+		private final ConcurrentLinkedQueue<TreeChangeSet> queue = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+		/**
+		 * @param listener The listener
+		 * @param executor The executor to call it on
+		 */
+		Subscription(ChangeSetListener listener, Executor executor) {
+			this.listener = listener;
+			this.executor = executor;
+		}
+
+		/**
+		 * Queues a change set and schedules the delivery, if none is scheduled yet
+		 *
+		 * @param changeSet The change set
+		 */
+		void offer(TreeChangeSet changeSet) {
+			queue.add(changeSet);
+			if (scheduled.compareAndSet(false, true)) {
+				executor.execute(this::drain);
+			}
+		}
+
+		/**
+		 * Delivers everything queued, merged into one set
+		 */
+		private void drain() {
+			while (true) {
+				TreeChangeSet merged = null;
+				TreeChangeSet next;
+				while ((next = queue.poll()) != null) {
+					merged = merged == null ? next : merged.merge(next);
+				}
+				if (merged != null) {
+					try {
+						listener.onChanges(merged);
+					} catch (RuntimeException e) {
+						CommandSystemUtil.getServerFacade().getLogger()
+								.log(Level.WARNING, "Change set listener failed for " + merged, e);
+					}
+				}
+
+				scheduled.set(false);
+				// something may have been queued after the poll, but before we cleared the flag
+				if (queue.isEmpty() || !scheduled.compareAndSet(false, true)) {
+					return;
+				}
+			}
+		}
+	}
+}
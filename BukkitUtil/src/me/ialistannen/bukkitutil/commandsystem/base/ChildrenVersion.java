@@ -0,0 +1,68 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+/**
+ * The children a node had since some version of the tree.
+ * <p>
+ * The versions of one node form a chain, the newest first. Entries are never changed, apart from cutting off the
+ * older ones nobody can see anymore.
+ */
+class ChildrenVersion {
+
+	private final long version;
+	private final AbstractCommandNode[] children;
+	private volatile ChildrenVersion previous;
+
+	/**
+	 * @param version  The version of the tree these children were set in
+	 * @param children The children
+	 * @param previous The children before that. Null if there were none or nobody can see them anymore.
+	 */
+	ChildrenVersion(long version, AbstractCommandNode[] children, ChildrenVersion previous) {
+		this.version = version;
+		this.children = children;
+		this.previous = previous;
+	}
+
+	/**
+	 * @return The version of the tree these children were set in
+	 */
+	long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return The children. Must not be modified.
+	 */
+	AbstractCommandNode[] getChildren() {
+		return children;
+	}
+
+	/**
+	 * @return The children before that. Null if there were none or nobody can see them anymore.
+	 */
+	ChildrenVersion getPrevious() {
+		return previous;
+	}
+
+	/**
+	 * Finds the children visible in a version
+	 *
+	 * @param version The version of the tree
+	 *
+	 * @return The entry valid in that version or null if there is none
+	 */
+	ChildrenVersion visibleIn(long version) {
+		ChildrenVersion current = this;
+		while (current != null && current.version > version) {
+			current = current.previous;
+		}
+		return current;
+	}
+
+	/**
+	 * Drops all older entries
+	 */
+	void dropPrevious() {
+		previous = null;
+	}
+}
@@ -0,0 +1,26 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import org.bukkit.command.CommandSender;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives every command executed through a {@link CommandTree}.
+ * <p>
+ * It is called on the thread executing the command, so implementations should hand the work off as quickly as
+ * possible.
+ */
+public interface CommandAuditSink {
+
+	/**
+	 * Records an executed command
+	 *
+	 * @param timestamp The time the execution started, in milliseconds since the epoch
+	 * @param sender    The sender of the command
+	 * @param node      The node that handled the command
+	 * @param args      The arguments the command was executed with. Must not be modified.
+	 * @param result    The result of the execution
+	 */
+	void record(long timestamp, @Nonnull CommandSender sender, @Nonnull AbstractCommandNode node,
+	            @Nonnull String[] args, @Nonnull CommandResultType result);
+}
@@ -0,0 +1,222 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import me.ialistannen.bukkitutil.commandsystem.base.AbstractCommandNode.FindCommandResult;
+import me.ialistannen.bukkitutil.commandsystem.metrics.AllocationTracker;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A batch of commands, executed by the same sender.
+ * <p>
+ * All commands are resolved first, sharing the pattern and access checks between them. Then they are executed,
+ * grouped by the node they resolved to. The results are returned in the order the commands were given.
+ * <p>
+ * A batch can have a time budget per tick. If it is exceeded, {@link #runTick()} returns and the next call continues
+ * where the last one stopped.
+ * <p>
+ * <b>The access checks are only done once per node.</b> So a command in the batch changing the permissions of the
+ * sender won't affect the other ones.
+ */
+public class CommandBatch {
+
+	private final CommandSender sender;
+	private final List<String[]> commands;
+	private final long tickBudgetNanos;
+	private final CommandTree tree;
+	private final CachingResolutionContext context = new CachingResolutionContext();
+
+	private final FindCommandResult[] found;
+	private final CommandResult[] results;
+	private int resolvedCount;
+
+	private int[] executionOrder;
+	private int executedCount;
+
+	/**
+	 * @param tree            The tree to resolve the commands in
+	 * @param sender          The sender executing all commands
+	 * @param commands        The commands. Each entry are the arguments for one command.
+	 * @param tickBudgetNanos The time budget per tick in nanoseconds. 0 or less for no limit.
+	 */
+	CommandBatch(@Nonnull CommandTree tree, @Nonnull CommandSender sender, @Nonnull List<String[]> commands,
+	             long tickBudgetNanos) {
+		this.tree = tree;
+		this.sender = sender;
+		this.commands = new ArrayList<>(commands);
+		this.tickBudgetNanos = tickBudgetNanos;
+
+		this.found = new FindCommandResult[this.commands.size()];
+		this.results = new CommandResult[this.commands.size()];
+
+		if (this.commands.isEmpty()) {
+			executionOrder = new int[0];
+		}
+	}
+
+	/**
+	 * Works on the batch until it is done or the time budget is used up.
+	 * <p>
+	 * At least one command is resolved or executed per call, so the batch always makes progress.
+	 *
+	 * @return True if the batch is done
+	 */
+	public boolean runTick() {
+		long start = System.nanoTime();
+
+		while (!isDone()) {
+			if (resolvedCount < found.length) {
+				resolveNext();
+			} else {
+				executeNext();
+			}
+
+			if (tickBudgetNanos > 0 && System.nanoTime() - start >= tickBudgetNanos) {
+				break;
+			}
+		}
+
+		return isDone();
+	}
+
+	/**
+	 * Checks if all commands were executed
+	 *
+	 * @return True if the batch is done
+	 */
+	public boolean isDone() {
+		return executionOrder != null && executedCount >= executionOrder.length;
+	}
+
+	/**
+	 * Returns the results of the commands
+	 *
+	 * @return The results, in the order the commands were given. Unmodifiable.
+	 *
+	 * @throws IllegalStateException if the batch is not done yet
+	 */
+	@Nonnull
+	public List<CommandResult> getResults() {
+		if (!isDone()) {
+			throw new IllegalStateException("The batch is not done yet");
+		}
+		return Collections.unmodifiableList(Arrays.asList(results));
+	}
+
+	/**
+	 * Runs the batch every tick, until it is done
+	 *
+	 * @param plugin The plugin to schedule the task for
+	 *
+	 * @return A future completed with the results, once the batch is done
+	 */
+	@Nonnull
+	public CompletableFuture<List<CommandResult>> schedule(@Nonnull Plugin plugin) {
+		CompletableFuture<List<CommandResult>> future = new CompletableFuture<>();
+
+		new BukkitRunnable() {
+			@Override
+			public void run() {
+				try {
+					if (runTick()) {
+						cancel();
+						future.complete(getResults());
+					}
+				} catch (RuntimeException e) {
+					cancel();
+					future.completeExceptionally(e);
+				}
+			}
+		}.runTaskTimer(plugin, 0, 1);
+
+		return future;
+	}
+
+	/**
+	 * Resolves the next command. Groups them by node, once all are resolved.
+	 */
+	private void resolveNext() {
+		String[] args = commands.get(resolvedCount);
+		try (TreeSnapshot snapshot = tree.snapshot()) {
+			found[resolvedCount] = tree.getRoot().find(new ArrayDeque<>(Arrays.asList(args)), sender,
+					tree.localize(sender, snapshot.wrap(context)));
+		}
+		resolvedCount++;
+
+		if (resolvedCount == found.length) {
+			buildExecutionOrder();
+		}
+	}
+
+	/**
+	 * Groups the indices of the commands by the node they resolved to
+	 */
+	private void buildExecutionOrder() {
+		Map<AbstractCommandNode, List<Integer>> groups = new LinkedHashMap<>();
+		for (int i = 0; i < found.length; i++) {
+			groups.computeIfAbsent(found[i].getCommandNode(), node -> new ArrayList<>()).add(i);
+		}
+
+		executionOrder = new int[found.length];
+		int index = 0;
+		for (List<Integer> group : groups.values()) {
+			for (Integer commandIndex : group) {
+				executionOrder[index++] = commandIndex;
+			}
+		}
+	}
+
+	/**
+	 * Executes the next command
+	 */
+	private void executeNext() {
+		int commandIndex = executionOrder[executedCount++];
+		AllocationTracker tracker = tree.currentAllocationTracker();
+		CommandMetrics metrics = tree.getMetrics();
+		long timestamp = tree.isAudited() ? System.currentTimeMillis() : 0;
+		long start = metrics == CommandMetrics.NONE ? 0 : System.nanoTime();
+		long allocatedBefore = CommandTree.allocationMark(tracker);
+
+		results[commandIndex] = AbstractCommandNode.executeFound(found[commandIndex], sender);
+		CommandTree.accountAllocations(tracker, allocatedBefore, results[commandIndex]);
+		CommandTree.measure(metrics, start, results[commandIndex]);
+		tree.audit(timestamp, sender, commands.get(commandIndex), results[commandIndex]);
+		// not needed anymore
+		found[commandIndex] = null;
+	}
+
+	/**
+	 * Remembers the result of every check. Only valid for one sender.
+	 */
+	private static class CachingResolutionContext extends ResolutionContext {
+
+		private final Map<AbstractCommandNode, CommandResultType> access = new HashMap<>();
+		private final Map<AbstractCommandNode, Map<String, Boolean>> matches = new HashMap<>();
+
+		@Override
+		boolean matches(@Nonnull AbstractCommandNode node, String argument) {
+			if (argument == null) {
+				return false;
+			}
+			return matches.computeIfAbsent(node, key -> new HashMap<>())
+					.computeIfAbsent(argument, key -> super.matches(node, key));
+		}
+
+		@Nonnull
+		@Override
+		CommandResultType checkAccess(@Nonnull AbstractCommandNode node, @Nonnull CommandSender sender) {
+			return access.computeIfAbsent(node, key -> super.checkAccess(key, sender));
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives measurements from the command system.
+ * <p>
+ * The methods are called on the hot path, often on the main thread. Implementations must be cheap and should not
+ * allocate. All methods do nothing by default.
+ */
+public interface CommandMetrics {
+
+	/**
+	 * Discards everything
+	 */
+	CommandMetrics NONE = new CommandMetrics() {
+	};
+
+	/**
+	 * Called after a command was executed
+	 *
+	 * @param node   The node that handled the command
+	 * @param result The result of the execution
+	 * @param nanos  The time finding and executing it took, in nanoseconds
+	 */
+	default void onDispatch(@Nonnull AbstractCommandNode node, @Nonnull CommandResultType result, long nanos) {
+	}
+
+	/**
+	 * Called after a tab completion was answered
+	 *
+	 * @param completions The amount of completions. -1 if the names of all players were proposed.
+	 * @param nanos       The time it took, in nanoseconds
+	 */
+	default void onTabComplete(int completions, long nanos) {
+	}
+
+	/**
+	 * Called whenever a cache is asked
+	 *
+	 * @param cache The cache
+	 * @param hit   True if it had the answer
+	 */
+	default void onCacheAccess(@Nonnull Cache cache, boolean hit) {
+	}
+
+	/**
+	 * Called after the help was rendered and sent
+	 *
+	 * @param nanos The time it took, in nanoseconds
+	 */
+	default void onHelpRendered(long nanos) {
+	}
+
+	/**
+	 * The caches reporting their hit rate
+	 */
+	enum Cache {
+		/**
+		 * The completion sessions of the default tab completer
+		 */
+		TAB_COMPLETION,
+		/**
+		 * The views of the {@link PermissionProjections}
+		 */
+		PERMISSION_VIEW,
+		/**
+		 * The remembered fingerprints of the {@link PermissionProjections}
+		 */
+		PERMISSION_FINGERPRINT
+	}
+}
@@ -39,4 +39,14 @@ public class CommandResult {
 	public Optional<AbstractCommandNode> getCommandNode() {
 		return Optional.ofNullable(commandNode);
 	}
+
+	/**
+	 * The command node that ended up executing, without wrapping it
+	 *
+	 * @return The {@link AbstractCommandNode} that ended up executing or null
+	 */
+	@Nullable
+	AbstractCommandNode getCommandNodeOrNull() {
+		return commandNode;
+	}
 }
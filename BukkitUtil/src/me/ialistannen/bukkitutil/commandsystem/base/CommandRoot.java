@@ -28,6 +28,11 @@ public class CommandRoot extends AbstractCommandNode {
 		return false;
 	}
 
+	@Override
+	public String getRequiredPermission() {
+		return "";
+	}
+
 	@Override
 	public boolean isNotAble(CommandSender sender) {
 		return false;
@@ -1,28 +1,76 @@
 package me.ialistannen.bukkitutil.commandsystem.base;
 
 import me.ialistannen.bukkitutil.commandsystem.implementation.DefaultHelpCommand;
+import me.ialistannen.bukkitutil.commandsystem.metrics.AllocationTracker;
 import me.ialistannen.bukkitutil.commandsystem.util.CommandSystemUtil;
+import me.ialistannen.bukkitutil.other.CaseFolding;
 import me.ialistannen.languageSystem.MessageProvider;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * The tree
+ * <p>
+ * The structure is versioned. Every change creates a new version, {@link #find(Queue, CommandSender)},
+ * {@link #executeCommand(CommandSender, String...)} and {@link #doTabComplete(CommandSender, String, String[])} pin
+ * the current one, so they never see a half done change. Use {@link #edit(Runnable)} to publish many changes at once.
+ * <p>
+ * Changes must be made from one thread only, reading is possible from any thread.
  */
 public class CommandTree {
 
 	private final CommandRoot root;
 
 	private final List<InvalidationListener> invalidationListener = new ArrayList<>();
+	// the caches of the tree itself, kept apart so removing a listener by index can't remove them
+	private final List<InvalidationListener> internalListeners;
+	private final ChangeSetDispatcher changeSets = new ChangeSetDispatcher();
+	private final KeywordSuggestionIndex suggestionIndex;
+	private final PermissionProjections projections;
+	private boolean useProjections;
+	private CommandAuditSink auditSink;
+	private volatile CommandMetrics metrics = CommandMetrics.NONE;
+	private volatile AllocationTracker allocationTracker;
+	private volatile TreeImage image;
+	private volatile boolean mergedPatterns;
+	private final Map<Locale, LocaleDispatchTable> localeTables = new ConcurrentHashMap<>();
+	private volatile Function<CommandSender, Locale> localeResolver = CommandTree::clientLocale;
 	private MessageProvider language;
+	// kept, so it can be removed again
+	private final Runnable reloadListener = this::invalidateMetadata;
+
+	private volatile long version;
+	private volatile long metadataGeneration;
+	private int editDepth;
+	private final List<Runnable> pendingInvalidations = new ArrayList<>();
+	private final TreeMap<Long, Integer> pins = new TreeMap<>();
+	private final Map<String, AbstractCommandNode> topLevelCommands = new ConcurrentHashMap<>();
+	private final Set<AbstractCommandNode> nodesWithHistory = Collections.newSetFromMap(new IdentityHashMap<>());
 
 	/**
 	 * Key for the base root is "tree_root", but it shouldn't be needed!
@@ -33,6 +81,52 @@ public class CommandTree {
 	public CommandTree(MessageProvider language) {
 		root = new CommandRoot(language);
 		this.language = language;
+
+		suggestionIndex = new KeywordSuggestionIndex(root);
+		projections = new PermissionProjections(root);
+		internalListeners = Arrays.asList(suggestionIndex, projections);
+
+		language.addReloadListener(reloadListener);
+	}
+
+	/**
+	 * Stops listening to the reloads of the language, so the language no longer keeps this tree alive.
+	 * <p>
+	 * Call it once the tree isn't used any more. {@link CommandTreeHolder#swap(CommandTree)} does it for the replaced
+	 * tree. The tree still works, but {@link #invalidateMetadata()} must be called by hand after a reload.
+	 */
+	@SuppressWarnings("unused")
+	public void dispose() {
+		language.removeReloadListener(reloadListener);
+	}
+
+	/**
+	 * Enables or disables the cached permission views. Disabled by default.
+	 * <p>
+	 * If enabled, finding and tab completing commands use the access results cached for the permission group of the
+	 * sender, instead of asking every node. Executing a command always asks the nodes, so a revoked permission is
+	 * never used.
+	 *
+	 * @param useProjections True to use them
+	 *
+	 * @see PermissionProjections
+	 */
+	@SuppressWarnings("unused")
+	public void setUsePermissionProjections(boolean useProjections) {
+		this.useProjections = useProjections;
+		if (!useProjections) {
+			projections.invalidateAll();
+		}
+	}
+
+	/**
+	 * Returns the cached permission views
+	 *
+	 * @return The {@link PermissionProjections} of this tree
+	 */
+	@SuppressWarnings("unused")
+	public PermissionProjections getPermissionProjections() {
+		return projections;
 	}
 
 	/**
@@ -91,6 +185,30 @@ public class CommandTree {
 		this.invalidationListener.remove(listener);
 	}
 
+	/**
+	 * Adds a listener getting the net changes of every published edit as one {@link TreeChangeSet}.
+	 * <p>
+	 * Unlike an {@link InvalidationListener} it isn't called while the tree is changed, but later on the executor.
+	 * Changes that cancel out within an edit, or while the listener is still busy with the last set, are dropped.
+	 *
+	 * @param listener The listener to add
+	 * @param executor The executor to call it on, e.g. a single thread for rebuilding a cache
+	 */
+	@SuppressWarnings("unused")
+	public void addChangeSetListener(@Nonnull ChangeSetListener listener, @Nonnull Executor executor) {
+		changeSets.subscribe(listener, executor);
+	}
+
+	/**
+	 * Removes a change set listener. Sets already handed to its executor are still delivered.
+	 *
+	 * @param listener The listener to remove
+	 */
+	@SuppressWarnings("unused")
+	public void removeChangeSetListener(@Nonnull ChangeSetListener listener) {
+		changeSets.unsubscribe(listener);
+	}
+
 	/**
 	 * Adds a child node to the root
 	 *
@@ -108,9 +226,23 @@ public class CommandTree {
 	 */
 	@SuppressWarnings("WeakerAccess")
 	public void addChild(AbstractCommandNode parent, AbstractCommandNode child) {
-		onInvalidate(InvalidationReason.CHILD_ADDED, parent, child, true);
-		parent.addChild(child);
-		onInvalidate(InvalidationReason.CHILD_ADDED, parent, child, false);
+		TreeImage image = this.image;
+		if (image != null) {
+			image.seed(child, parent.getChildPath(child.getBaseKey()), currentLocale());
+		}
+		edit(() -> {
+			onInvalidate(InvalidationReason.CHILD_ADDED, parent, child, true);
+			versionChildren(parent);
+			parent.addChild(child);
+			recordChildren(parent);
+			mergeChildPatterns(parent);
+			if (mergedPatterns) {
+				child.getAllChildren().forEach(this::mergeChildPatterns);
+				mergeChildPatterns(child);
+			}
+			changeSets.record(InvalidationReason.CHILD_ADDED, parent, child);
+			pendingInvalidations.add(() -> onInvalidate(InvalidationReason.CHILD_ADDED, parent, child, false));
+		});
 	}
 
 	/**
@@ -125,12 +257,40 @@ public class CommandTree {
 	public void addTopLevelChild(AbstractCommandNode child, boolean attachHelp,
 	                             Plugin plugin, CommandExecutor executor, TabCompleter tabCompleter) {
 		addChild(child);
-		CommandSystemUtil.registerCommand(plugin, child.getKeyword(), executor, tabCompleter);
+		String name = child.getKeyword();
+		CommandSystemUtil.registerCommand(plugin, name, executor, tabCompleter);
+		topLevelCommands.put(CaseFolding.fold(name), child);
 		if (attachHelp) {
 			setHelpCommand(new DefaultHelpCommand(language, this, "command_help"), child);
 		}
 	}
 
+	/**
+	 * Removes many children of a parent at once. Copies the children of the parent once, instead of once per child.
+	 *
+	 * @param parent   The parent node
+	 * @param children The children to remove
+	 */
+	@SuppressWarnings("WeakerAccess")
+	public void removeChildren(AbstractCommandNode parent, Collection<? extends AbstractCommandNode> children) {
+		edit(() -> {
+			versionChildren(parent);
+			for (AbstractCommandNode child : children) {
+				onInvalidate(InvalidationReason.CHILD_REMOVED, parent, child, true);
+				parent.removeChild(child);
+				changeSets.record(InvalidationReason.CHILD_REMOVED, parent, child);
+				pendingInvalidations.add(() -> onInvalidate(InvalidationReason.CHILD_REMOVED, parent, child, false));
+			}
+			recordChildren(parent);
+			mergeChildPatterns(parent);
+			if (parent == root) {
+				Set<AbstractCommandNode> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+				removed.addAll(children);
+				topLevelCommands.values().removeIf(removed::contains);
+			}
+		});
+	}
+
 	/**
 	 * Adds the child and registers the command
 	 *
@@ -159,9 +319,178 @@ public class CommandTree {
 	 */
 	@SuppressWarnings("WeakerAccess")
 	public void removeChild(AbstractCommandNode parent, AbstractCommandNode child) {
-		onInvalidate(InvalidationReason.CHILD_REMOVED, parent, child, true);
-		parent.removeChild(child);
-		onInvalidate(InvalidationReason.CHILD_REMOVED, parent, child, false);
+		edit(() -> {
+			onInvalidate(InvalidationReason.CHILD_REMOVED, parent, child, true);
+			versionChildren(parent);
+			parent.removeChild(child);
+			recordChildren(parent);
+			mergeChildPatterns(parent);
+			changeSets.record(InvalidationReason.CHILD_REMOVED, parent, child);
+			if (parent == root) {
+				topLevelCommands.values().remove(child);
+			}
+			pendingInvalidations.add(() -> onInvalidate(InvalidationReason.CHILD_REMOVED, parent, child, false));
+		});
+	}
+
+	/**
+	 * Makes changes to the tree and publishes them as one new version.
+	 * <p>
+	 * Readers see either none or all of the changes. The {@link InvalidationListener#onPostInvalidate(
+	 *InvalidationReason, AbstractCommandNode, AbstractCommandNode)} calls are delayed until the changes are published.
+	 * Calls can be nested, the outermost one publishes.
+	 *
+	 * @param changes The changes, calling {@link #addChild(AbstractCommandNode, AbstractCommandNode)} and
+	 *                {@link #removeChild(AbstractCommandNode, AbstractCommandNode)}
+	 */
+	@SuppressWarnings("WeakerAccess")
+	public void edit(@Nonnull Runnable changes) {
+		editDepth++;
+		try {
+			changes.run();
+		} finally {
+			editDepth--;
+			if (editDepth == 0) {
+				publish();
+			}
+		}
+	}
+
+	/**
+	 * Pins the current version of the tree.
+	 * <p>
+	 * Close it after use, until then the tree keeps the version around.
+	 *
+	 * @return A snapshot of the current version
+	 */
+	@Nonnull
+	public TreeSnapshot snapshot() {
+		synchronized (pins) {
+			long pinned = version;
+			pins.merge(pinned, 1, Integer::sum);
+			return new TreeSnapshot(this, pinned);
+		}
+	}
+
+	/**
+	 * Returns the current version of the tree
+	 *
+	 * @return The version readers currently see
+	 */
+	@SuppressWarnings("unused")
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns how often the translated information of the nodes was invalidated
+	 *
+	 * @return The generation of the metadata. Changes with every {@link #invalidateMetadata()}.
+	 */
+	public long getMetadataGeneration() {
+		return metadataGeneration;
+	}
+
+	/**
+	 * Releases a pinned version
+	 *
+	 * @param pinned The version to release
+	 */
+	void release(long pinned) {
+		synchronized (pins) {
+			Integer count = pins.get(pinned);
+			if (count == null) {
+				return;
+			}
+			boolean wasOldest = pins.firstKey() == pinned;
+			if (count == 1) {
+				pins.remove(pinned);
+			} else {
+				pins.put(pinned, count - 1);
+			}
+			if (wasOldest && !pins.containsKey(pinned)) {
+				prune();
+			}
+		}
+	}
+
+	/**
+	 * @param node The node
+	 *
+	 * @return The current children of the node
+	 */
+	private static AbstractCommandNode[] childrenArray(AbstractCommandNode node) {
+		Set<AbstractCommandNode> children = node.getChildren();
+		return children.toArray(new AbstractCommandNode[children.size()]);
+	}
+
+	/**
+	 * Publishes the children the node had before the tree managed it as the first version, if it has none yet.
+	 * <p>
+	 * Must be called before the children are changed. Until then readers iterate the children of the node directly.
+	 *
+	 * @param parent The node about to change
+	 */
+	private void versionChildren(AbstractCommandNode parent) {
+		if (parent.getChildrenVersions() == null) {
+			parent.setChildrenVersions(new ChildrenVersion(0, childrenArray(parent), null));
+		}
+	}
+
+	/**
+	 * Adds the children of the node to the version being edited
+	 *
+	 * @param parent The changed node. Must already have a version, see {@link #versionChildren(AbstractCommandNode)}.
+	 */
+	private void recordChildren(AbstractCommandNode parent) {
+		long staged = version + 1;
+		AbstractCommandNode[] now = childrenArray(parent);
+
+		synchronized (pins) {
+			ChildrenVersion head = parent.getChildrenVersions();
+			if (head.getVersion() == staged) {
+				parent.setChildrenVersions(new ChildrenVersion(staged, now, head.getPrevious()));
+			} else {
+				parent.setChildrenVersions(new ChildrenVersion(staged, now, head));
+			}
+			nodesWithHistory.add(parent);
+		}
+	}
+
+	/**
+	 * Publishes the edited version and notifies the listeners
+	 */
+	private void publish() {
+		synchronized (pins) {
+			version++;
+			prune();
+		}
+		changeSets.publish(version);
+
+		List<Runnable> invalidations = new ArrayList<>(pendingInvalidations);
+		pendingInvalidations.clear();
+		invalidations.forEach(Runnable::run);
+	}
+
+	/**
+	 * Drops all versions of children nobody can see anymore. Must hold the lock of the pins.
+	 */
+	private void prune() {
+		long oldest = pins.isEmpty() ? version : Math.min(pins.firstKey(), version);
+
+		Iterator<AbstractCommandNode> iterator = nodesWithHistory.iterator();
+		while (iterator.hasNext()) {
+			AbstractCommandNode node = iterator.next();
+			ChildrenVersion head = node.getChildrenVersions();
+			ChildrenVersion oldestVisible = head.visibleIn(oldest);
+			if (oldestVisible == null) {
+				continue;
+			}
+			oldestVisible.dropPrevious();
+			if (oldestVisible == head) {
+				iterator.remove();
+			}
+		}
 	}
 
 	/**
@@ -196,7 +525,9 @@ public class CommandTree {
 	 */
 	public AbstractCommandNode.FindTabCompleteResult doTabComplete(@Nonnull CommandSender sender, @Nonnull String
 			alias, @Nonnull String[] args) {
-		return root.doTabComplete(sender, alias, args);
+		try (TreeSnapshot snapshot = snapshot()) {
+			return root.doTabComplete(sender, alias, args, localize(sender, snapshot.wrap(contextFor(sender))));
+		}
 	}
 
 	/**
@@ -208,7 +539,9 @@ public class CommandTree {
 	 * @return The command or an empty optional
 	 */
 	public AbstractCommandNode.FindCommandResult find(Queue<String> args, CommandSender sender) {
-		return root.find(args, sender);
+		try (TreeSnapshot snapshot = snapshot()) {
+			return root.find(args, sender, localize(sender, snapshot.wrap(contextFor(sender))));
+		}
 	}
 
 	/**
@@ -220,7 +553,441 @@ public class CommandTree {
 	 * @return The CommandResult
 	 */
 	public CommandResult executeCommand(CommandSender sender, String... args) {
-		return root.executeCommand(sender, args);
+		return execute(root, null, sender, args);
+	}
+
+	/**
+	 * Executes a command registered by {@link #addTopLevelChild(AbstractCommandNode, boolean, Plugin,
+	 * CommandExecutor, TabCompleter)}, starting directly at its node
+	 *
+	 * @param name   The name the command was registered with
+	 * @param sender The sender of the command
+	 * @param args   The arguments of the command, without the name
+	 *
+	 * @return The CommandResult
+	 */
+	public CommandResult executeTopLevel(@Nonnull String name, CommandSender sender, String... args) {
+		AbstractCommandNode node = topLevelCommands.get(CaseFolding.fold(name));
+		if (node == null) {
+			// not registered through this tree, let the root find it
+			return executeCommand(sender, withName(name, args));
+		}
+		return execute(node, name, sender, args);
+	}
+
+	/**
+	 * Returns the node a command was registered for
+	 *
+	 * @param name The name the command was registered with
+	 *
+	 * @return The node, if it was registered by {@link #addTopLevelChild(AbstractCommandNode, boolean, Plugin,
+	 * CommandExecutor, TabCompleter)}
+	 */
+	@SuppressWarnings("unused")
+	public Optional<AbstractCommandNode> getTopLevelCommand(@Nonnull String name) {
+		return Optional.ofNullable(topLevelCommands.get(CaseFolding.fold(name)));
+	}
+
+	/**
+	 * Executes the command, starting at an already matched node
+	 *
+	 * @param node   The root or a top level node
+	 * @param name   The name of the top level node. Null if starting at the root.
+	 * @param sender The sender of the command
+	 * @param args   The arguments for the children of the node
+	 *
+	 * @return The CommandResult
+	 */
+	private CommandResult execute(AbstractCommandNode node, String name, CommandSender sender, String[] args) {
+		// read once, so a tracker or metrics set meanwhile don't see half an execution
+		AllocationTracker tracker = allocationTracker;
+		CommandMetrics metrics = this.metrics;
+		long timestamp = auditSink == null ? 0 : System.currentTimeMillis();
+		long start = metrics == CommandMetrics.NONE ? 0 : System.nanoTime();
+		long allocatedBefore = allocationMark(tracker);
+
+		CommandResult result;
+		try (TreeSnapshot snapshot = snapshot()) {
+			// never the cached views, the permissions may have changed since
+			result = node.executeCommand(sender, localize(sender, snapshot.wrap(ResolutionContext.DIRECT)), false,
+					args);
+		}
+
+		accountAllocations(tracker, allocatedBefore, result);
+		measure(metrics, start, result);
+		if (auditSink != null) {
+			audit(timestamp, sender, name == null ? args : withName(name, args), result);
+		}
+		return result;
+	}
+
+	/**
+	 * @param name The name of the command
+	 * @param args The arguments following it
+	 *
+	 * @return A new array with the name as first argument
+	 */
+	private static String[] withName(String name, String[] args) {
+		String[] arguments = new String[args.length + 1];
+		arguments[0] = name;
+		System.arraycopy(args, 0, arguments, 1, args.length);
+		return arguments;
+	}
+
+	/**
+	 * Sets the sink receiving every executed command
+	 *
+	 * @param auditSink The sink. Null to disable it.
+	 */
+	@SuppressWarnings("unused")
+	public void setAuditSink(@Nullable CommandAuditSink auditSink) {
+		this.auditSink = auditSink;
+	}
+
+	/**
+	 * Sets the metrics receiving the measurements of this tree and its executors
+	 *
+	 * @param metrics The metrics. Null to disable them.
+	 */
+	@SuppressWarnings("unused")
+	public void setMetrics(@Nullable CommandMetrics metrics) {
+		this.metrics = metrics == null ? CommandMetrics.NONE : metrics;
+		projections.setMetrics(this.metrics);
+	}
+
+	/**
+	 * Returns the metrics receiving the measurements
+	 *
+	 * @return The metrics. {@link CommandMetrics#NONE} if none are set.
+	 */
+	@Nonnull
+	public CommandMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Enables measuring the heap allocated by every executed command
+	 *
+	 * @param allocationTracker The tracker to account them in. Null to disable it.
+	 */
+	@SuppressWarnings("unused")
+	public void setAllocationTracker(@Nullable AllocationTracker allocationTracker) {
+		this.allocationTracker = allocationTracker;
+	}
+
+	/**
+	 * Returns the tracker accounting the allocations of the commands
+	 *
+	 * @return The tracker, if one is set
+	 */
+	@SuppressWarnings("unused")
+	public Optional<AllocationTracker> getAllocationTracker() {
+		return Optional.ofNullable(allocationTracker);
+	}
+
+	/**
+	 * Returns the tracker accounting the allocations of the commands
+	 *
+	 * @return The tracker or null if allocations aren't tracked
+	 */
+	@Nullable
+	AllocationTracker currentAllocationTracker() {
+		return allocationTracker;
+	}
+
+	/**
+	 * Reads the allocation counter of the current thread
+	 *
+	 * @param tracker The tracker to read it with. Null if allocations aren't tracked.
+	 *
+	 * @return The allocated bytes of the current thread or 0 if allocations aren't tracked
+	 */
+	static long allocationMark(@Nullable AllocationTracker tracker) {
+		return tracker == null ? 0 : tracker.currentThreadAllocatedBytes();
+	}
+
+	/**
+	 * Accounts the allocations of an execution, if they are tracked
+	 *
+	 * @param tracker The tracker {@link #allocationMark(AllocationTracker)} was called with
+	 * @param mark    The result of {@link #allocationMark(AllocationTracker)} before the execution
+	 * @param result  The result of the execution
+	 */
+	static void accountAllocations(@Nullable AllocationTracker tracker, long mark, CommandResult result) {
+		AbstractCommandNode node = result.getCommandNodeOrNull();
+		if (tracker != null && node != null) {
+			tracker.record(node, tracker.currentThreadAllocatedBytes() - mark);
+		}
+	}
+
+	/**
+	 * Reports an execution to the metrics
+	 *
+	 * @param metrics The metrics that were set when the execution started
+	 * @param start   The {@link System#nanoTime()} the execution started at. Ignored without metrics.
+	 * @param result  The result of the execution
+	 */
+	static void measure(CommandMetrics metrics, long start, CommandResult result) {
+		AbstractCommandNode node = result.getCommandNodeOrNull();
+		if (metrics != CommandMetrics.NONE && node != null) {
+			metrics.onDispatch(node, result.getResultType(), System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Passes the command to the audit sink, if any
+	 *
+	 * @param timestamp The time the execution started
+	 * @param sender    The sender of the command
+	 * @param args      The arguments of the command
+	 * @param result    The result of the execution
+	 */
+	void audit(long timestamp, CommandSender sender, String[] args, CommandResult result) {
+		CommandAuditSink sink = auditSink;
+		AbstractCommandNode node = result.getCommandNodeOrNull();
+		if (sink != null && node != null) {
+			sink.record(timestamp, sender, node, args, result.getResultType());
+		}
+	}
+
+	/**
+	 * Checks whether an audit sink is set
+	 *
+	 * @return True if commands are audited
+	 */
+	boolean isAudited() {
+		return auditSink != null;
+	}
+
+	/**
+	 * Returns the context to resolve commands for the sender with
+	 *
+	 * @param sender The sender
+	 *
+	 * @return The context to use
+	 */
+	private ResolutionContext contextFor(CommandSender sender) {
+		return useProjections ? projections.viewFor(sender) : ResolutionContext.DIRECT;
+	}
+
+	/**
+	 * Wraps the context, so it uses the keywords of the locale of the sender, if a table exists for it
+	 *
+	 * @param sender  The sender
+	 * @param context The context to wrap
+	 *
+	 * @return The wrapped context or the given one, if the sender uses the locale of the language
+	 */
+	ResolutionContext localize(CommandSender sender, ResolutionContext context) {
+		if (localeTables.isEmpty()) {
+			return context;
+		}
+		Locale locale = localeResolver.apply(sender);
+		if (locale == null || locale.equals(currentLocale())) {
+			return context;
+		}
+		LocaleDispatchTable table = localeTables.get(locale);
+		if (table == null) {
+			table = localeTables.get(new Locale(locale.getLanguage()));
+		}
+		return table == null ? context : table.wrap(context);
+	}
+
+	/**
+	 * Adds a locale players may use the commands in, besides the one of the language of this tree.
+	 * <p>
+	 * Senders whose locale has a table resolve the keywords in it, the others in the locale of the tree. A table
+	 * for "de" is used for "de_AT" too, unless there is one for "de_AT".
+	 *
+	 * @param language A second language, set to the locale to add. Not changed afterwards.
+	 */
+	@SuppressWarnings("unused")
+	public void addLocale(@Nonnull MessageProvider language) {
+		Locale locale = language.getLanguage();
+		localeTables.put(locale, new LocaleDispatchTable(locale, language, root));
+	}
+
+	/**
+	 * Removes a locale added by {@link #addLocale(MessageProvider)}
+	 *
+	 * @param locale The locale to remove
+	 */
+	@SuppressWarnings("unused")
+	public void removeLocale(@Nonnull Locale locale) {
+		localeTables.remove(locale);
+	}
+
+	/**
+	 * Sets the function telling the locale of a sender. By default the client locale of players is used.
+	 *
+	 * @param localeResolver The function. May return null for senders without a locale. Null to use the default.
+	 */
+	@SuppressWarnings("unused")
+	public void setLocaleResolver(@Nullable Function<CommandSender, Locale> localeResolver) {
+		this.localeResolver = localeResolver == null ? CommandTree::clientLocale : localeResolver;
+	}
+
+	/**
+	 * @param sender The sender
+	 *
+	 * @return The locale the client of the player reports, like "de_DE". Null for other senders.
+	 */
+	private static Locale clientLocale(CommandSender sender) {
+		if (!(sender instanceof Player)) {
+			return null;
+		}
+		Player.Spigot spigot = ((Player) sender).spigot();
+		String tag = spigot == null ? null : spigot.getLocale();
+		if (tag == null || tag.isEmpty()) {
+			return null;
+		}
+		String[] parts = tag.split("_", 3);
+		return parts.length == 1 ? new Locale(parts[0]) : new Locale(parts[0], parts[1]);
+	}
+
+	/**
+	 * Executes all commands at once, sharing the work needed to find them.
+	 *
+	 * @param sender   The sender of all the commands
+	 * @param commands The commands. Each entry are the arguments for one command.
+	 *
+	 * @return The results, in the order of the commands
+	 *
+	 * @see CommandBatch
+	 */
+	@SuppressWarnings("unused")
+	public List<CommandResult> executeBatch(CommandSender sender, List<String[]> commands) {
+		CommandBatch batch = newBatch(sender, commands, 0, TimeUnit.NANOSECONDS);
+		batch.runTick();
+		return batch.getResults();
+	}
+
+	/**
+	 * Creates a batch of commands, which can be spread over multiple ticks.
+	 * <p>
+	 * Use {@link CommandBatch#runTick()} or {@link CommandBatch#schedule(Plugin)} to run it.
+	 *
+	 * @param sender     The sender of all the commands
+	 * @param commands   The commands. Each entry are the arguments for one command.
+	 * @param tickBudget The time the batch may use per tick. 0 or less for no limit.
+	 * @param unit       The unit of the tick budget
+	 *
+	 * @return The created batch. Not run yet.
+	 */
+	@SuppressWarnings("WeakerAccess")
+	public CommandBatch newBatch(CommandSender sender, List<String[]> commands, long tickBudget, TimeUnit unit) {
+		return new CommandBatch(this, sender, commands, unit.toNanos(tickBudget));
+	}
+
+	/**
+	 * Returns the index used to suggest keywords for commands that weren't found
+	 *
+	 * @return The {@link KeywordSuggestionIndex} of this tree
+	 */
+	public KeywordSuggestionIndex getSuggestionIndex() {
+		return suggestionIndex;
+	}
+
+	/**
+	 * Sets the image the nodes take their translated information from, when they are added.
+	 * <p>
+	 * Set it before adding the nodes. It is dropped by {@link #invalidateMetadata()}, as it was written with the old
+	 * language files. An image written with other translations than the current ones is not used at all.
+	 *
+	 * @param image The loaded image. Null to translate everything.
+	 *
+	 * @return True if the image is used, false if it doesn't match the current translations
+	 *
+	 * @see TreeImage#load(Path)
+	 */
+	@SuppressWarnings("unused")
+	public boolean setImage(@Nullable TreeImage image) {
+		if (image != null && image.getTranslationHash() != language.getTranslationHash()) {
+			this.image = null;
+			return false;
+		}
+		this.image = image;
+		return true;
+	}
+
+	/**
+	 * Returns the image the nodes take their translated information from
+	 *
+	 * @return The image, if one is set
+	 */
+	@SuppressWarnings("unused")
+	public Optional<TreeImage> getImage() {
+		return Optional.ofNullable(image);
+	}
+
+	/**
+	 * Writes the current structure of this tree, so the next start can load it with {@link TreeImage#load(Path)}
+	 *
+	 * @param file The file to write to
+	 *
+	 * @throws IOException if writing fails
+	 */
+	@SuppressWarnings("unused")
+	public void saveImage(@Nonnull Path file) throws IOException {
+		TreeImage.write(this, currentLocale(), language.getTranslationHash(), file);
+	}
+
+	/**
+	 * @return The current locale of the language. {@link Locale#ROOT} if it has none.
+	 */
+	private Locale currentLocale() {
+		return language.getLanguage() == null ? Locale.ROOT : language.getLanguage();
+	}
+
+	/**
+	 * Forgets the translated information of all nodes. Called when the language reports a reload, call it yourself
+	 * if it doesn't.
+	 *
+	 * @see AbstractCommandNode#invalidateMetadata()
+	 */
+	@SuppressWarnings("unused")
+	public void invalidateMetadata() {
+		image = null;
+		localeTables.replaceAll((locale, table) -> table.rebuild(root));
+		root.invalidateMetadata();
+		for (AbstractCommandNode node : root.getAllChildren()) {
+			node.invalidateMetadata();
+		}
+		// indexed by the old keywords
+		suggestionIndex.rebuild();
+		metadataGeneration++;
+		if (mergedPatterns) {
+			// the patterns may have changed
+			setMergedPatterns(true);
+		}
+	}
+
+	/**
+	 * Merges the patterns of the children of every node into one regex, so a single match finds the first matching
+	 * child. Pays off for nodes with many children using real regex patterns, see {@link SiblingPatterns}.
+	 * <p>
+	 * The merged patterns are rebuilt whenever the children or the translations change.
+	 * <p>
+	 * Off by default. The merged match is slower when the first child matches, the common case for most trees, but
+	 * faster when no child or only the last one does. Measure your tree with {@code SiblingPatternsBenchmark} in the
+	 * benchmark sources before enabling it.
+	 *
+	 * @param mergedPatterns True to merge them, false to match every child on its own
+	 */
+	@SuppressWarnings("unused")
+	public void setMergedPatterns(boolean mergedPatterns) {
+		this.mergedPatterns = mergedPatterns;
+		mergeChildPatterns(root);
+		root.getAllChildren().forEach(this::mergeChildPatterns);
+	}
+
+	/**
+	 * Rebuilds the merged patterns of the children of a node, if they are enabled
+	 *
+	 * @param node The node whose children changed
+	 */
+	private void mergeChildPatterns(AbstractCommandNode node) {
+		node.setChildPatterns(mergedPatterns ? SiblingPatterns.build(node.getChildren()) : null);
 	}
 
 	/**
@@ -241,7 +1008,20 @@ public class CommandTree {
 	 */
 	private void onInvalidate(InvalidationReason reason, AbstractCommandNode parent, AbstractCommandNode child,
 	                          boolean preInvalidate) {
-		for (InvalidationListener listener : invalidationListener) {
+		notifyListeners(internalListeners, reason, parent, child, preInvalidate);
+		notifyListeners(invalidationListener, reason, parent, child, preInvalidate);
+	}
+
+	/**
+	 * @param listeners     The listeners to notify
+	 * @param reason        The reason why the tree changed it's structure
+	 * @param parent        The parent node
+	 * @param child         The child node
+	 * @param preInvalidate True if the change hasn't happened yet
+	 */
+	private static void notifyListeners(List<InvalidationListener> listeners, InvalidationReason reason,
+	                                    AbstractCommandNode parent, AbstractCommandNode child, boolean preInvalidate) {
+		for (InvalidationListener listener : listeners) {
 			if (preInvalidate) {
 				listener.onPreInvalidate(reason, parent, child);
 			} else {
@@ -273,6 +1053,21 @@ public class CommandTree {
 		void onPostInvalidate(InvalidationReason reason, AbstractCommandNode parent, AbstractCommandNode child);
 	}
 
+	/**
+	 * A listener for the net structural changes of the tree, delivered asynchronously
+	 *
+	 * @see #addChangeSetListener(ChangeSetListener, Executor)
+	 */
+	@FunctionalInterface
+	public interface ChangeSetListener {
+		/**
+		 * Called with the changes of one or more published edits. May be empty, if merged changes canceled out.
+		 *
+		 * @param changeSet The changes, with the sequence numbers to detect missed ones
+		 */
+		void onChanges(@Nonnull TreeChangeSet changeSet);
+	}
+
 	/**
 	 * The reason why the tree structure can change
 	 */
@@ -0,0 +1,239 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import me.ialistannen.bukkitutil.commandsystem.util.CommandSystemUtil;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.TabCompleter;
+import org.bukkit.plugin.Plugin;
+
+import javax.annotation.Nonnull;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the current {@link CommandTree} and allows replacing it as a whole.
+ * <p>
+ * Build the new tree in the background, without registering its commands, and hand it to {@link #swap(CommandTree)}.
+ * Commands started afterwards see the new tree, while the ones holding a {@link Lease} finish on the old one. The
+ * future returned by the swap completes once the last of them is done, the grace period.
+ */
+public class CommandTreeHolder {
+
+	private final List<SwapListener> swapListeners = new CopyOnWriteArrayList<>();
+	private volatile Generation current;
+
+	/**
+	 * @param tree The initial tree
+	 */
+	public CommandTreeHolder(@Nonnull CommandTree tree) {
+		this.current = new Generation(tree);
+	}
+
+	/**
+	 * Returns the current tree, without holding it. Use {@link #acquire()} to use it for a command.
+	 *
+	 * @return The current tree
+	 */
+	@Nonnull
+	public CommandTree getTree() {
+		return current.tree;
+	}
+
+	/**
+	 * Holds the current tree, until the lease is closed
+	 *
+	 * @return The lease for the current tree. Close it once the command is done.
+	 */
+	@Nonnull
+	public Lease acquire() {
+		while (true) {
+			Generation generation = current;
+			generation.readers.incrementAndGet();
+			if (generation == current) {
+				return new Lease(generation);
+			}
+			// swapped in between, the swap may already think the old one is drained
+			generation.release();
+		}
+	}
+
+	/**
+	 * Replaces the tree. Registers no commands.
+	 * <p>
+	 * The old tree is {@link CommandTree#dispose() disposed}, so the language doesn't keep it alive. Don't swap it in
+	 * again, build a new one.
+	 *
+	 * @param tree The new tree
+	 *
+	 * @return A future completing with the old tree once no command uses it any more
+	 */
+	@Nonnull
+	public CompletableFuture<CommandTree> swap(@Nonnull CommandTree tree) {
+		Generation old;
+		synchronized (this) {
+			old = current;
+			current = new Generation(tree);
+			old.retire();
+		}
+		old.tree.dispose();
+		for (SwapListener listener : swapListeners) {
+			listener.onSwap(old.tree, tree);
+		}
+		return old.drained;
+	}
+
+	/**
+	 * Replaces the tree and registers the top level commands that changed. Commands whose keyword exists in both
+	 * trees are left alone, as they are already served by the executor and tab completer using this holder.
+	 *
+	 * @param tree      The new tree
+	 * @param plugin    The plugin owning the commands
+	 * @param executor  The executor for new commands
+	 * @param completer The tab completer for new commands
+	 *
+	 * @return A future completing with the old tree once no command uses it any more
+	 */
+	@Nonnull
+	public CompletableFuture<CommandTree> swap(@Nonnull CommandTree tree, @Nonnull Plugin plugin,
+	                                           @Nonnull CommandExecutor executor, @Nonnull TabCompleter completer) {
+		CompletableFuture<CommandTree> drained;
+		Set<String> oldKeywords;
+		synchronized (this) {
+			oldKeywords = topLevelKeywords(current.tree);
+			drained = swap(tree);
+		}
+		Set<String> newKeywords = topLevelKeywords(tree);
+
+		for (String keyword : oldKeywords) {
+			if (!newKeywords.contains(keyword)) {
+				CommandSystemUtil.unregisterCommand(plugin, keyword);
+			}
+		}
+		for (String keyword : newKeywords) {
+			if (!oldKeywords.contains(keyword)) {
+				CommandSystemUtil.registerCommand(plugin, keyword, executor, completer);
+			}
+		}
+		return drained;
+	}
+
+	/**
+	 * Adds a listener notified after every swap
+	 *
+	 * @param listener The listener to add
+	 */
+	public void addSwapListener(@Nonnull SwapListener listener) {
+		swapListeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener
+	 *
+	 * @param listener The listener to remove
+	 */
+	public void removeSwapListener(@Nonnull SwapListener listener) {
+		swapListeners.remove(listener);
+	}
+
+	/**
+	 * @param tree The tree
+	 *
+	 * @return The folded keywords of the children of the root
+	 */
+	private static Set<String> topLevelKeywords(CommandTree tree) {
+		Set<String> keywords = new HashSet<>();
+		for (AbstractCommandNode node : tree.getRoot().getChildren()) {
+			keywords.add(node.getMetadata().getFoldedKeyword());
+		}
+		return keywords;
+	}
+
+	/**
+	 * A tree and the commands currently using it
+	 */
+	private static class Generation {
+		private final CommandTree tree;
+		private final AtomicInteger readers = new AtomicInteger();
+		private final CompletableFuture<CommandTree> drained = new CompletableFuture<>();
+		private volatile boolean retired;
+
+		/**
+		 * @param tree The tree
+		 */
+		Generation(CommandTree tree) {
+			this.tree = tree;
+		}
+
+		/**
+		 * A command is done with the tree
+		 */
+		void release() {
+			if (readers.decrementAndGet() == 0 && retired) {
+				drained.complete(tree);
+			}
+		}
+
+		/**
+		 * The tree was replaced. No new commands will use it.
+		 */
+		void retire() {
+			retired = true;
+			if (readers.get() == 0) {
+				drained.complete(tree);
+			}
+		}
+	}
+
+	/**
+	 * Keeps a tree alive for a command. Close it once the command is done.
+	 */
+	public static class Lease implements AutoCloseable {
+		private final Generation generation;
+		private boolean closed;
+
+		/**
+		 * @param generation The held generation
+		 */
+		private Lease(Generation generation) {
+			this.generation = generation;
+		}
+
+		/**
+		 * @return The held tree
+		 */
+		@Nonnull
+		public CommandTree getTree() {
+			return generation.tree;
+		}
+
+		/**
+		 * Releases the tree. Calling it more than once does nothing.
+		 */
+		@Override
+		public void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			generation.release();
+		}
+	}
+
+	/**
+	 * Notified after the tree was replaced
+	 */
+	@FunctionalInterface
+	public interface SwapListener {
+
+		/**
+		 * Called after the tree was replaced. Commands may still run on the old one.
+		 *
+		 * @param oldTree The replaced tree
+		 * @param newTree The new tree
+		 */
+		void onSwap(@Nonnull CommandTree oldTree, @Nonnull CommandTree newTree);
+	}
+}
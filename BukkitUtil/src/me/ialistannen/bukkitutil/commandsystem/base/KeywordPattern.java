@@ -0,0 +1,203 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import me.ialistannen.bukkitutil.other.CaseFolding;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The pattern of a node, analysed once when it is translated.
+ * <p>
+ * Most patterns are just the keyword, a few alternatives like "tp|teleport" or a keyword followed by ".*". Those are
+ * matched by comparing the {@link CaseFolding folded} strings, only the other ones go through a case insensitive
+ * regex. Surrounding anchors and a single group around the whole pattern are ignored, as the argument always has to
+ * match completely anyways.
+ * <p>
+ * Only patterns made of ASCII chars are analysed, as the regex only ignores the case of those. For the same reason
+ * the fast paths {@link CaseFolding#foldAscii(String) fold} only the ASCII letters of the argument, any other char
+ * has to match exactly.
+ */
+final class KeywordPattern {
+
+	private static final String META_CHARS = "\\^$.|?*+()[]{}";
+
+	private final String source;
+	private final Kind kind;
+	private final String literal;
+	private final Set<String> alternatives;
+	private volatile Pattern pattern;
+
+	/**
+	 * @param source       The source of the pattern
+	 * @param kind         The kind of the pattern
+	 * @param literal      The folded literal or prefix. Null for the other kinds.
+	 * @param alternatives The folded alternatives. Null for the other kinds.
+	 * @param pattern      The compiled pattern. Null if it isn't needed for matching.
+	 */
+	private KeywordPattern(String source, Kind kind, String literal, Set<String> alternatives, Pattern pattern) {
+		this.source = source;
+		this.kind = kind;
+		this.literal = literal;
+		this.alternatives = alternatives;
+		this.pattern = pattern;
+	}
+
+	/**
+	 * Analyses a pattern
+	 *
+	 * @param source The source of the pattern
+	 *
+	 * @return The analysed pattern
+	 */
+	@Nonnull
+	static KeywordPattern compile(@Nonnull String source) {
+		String body = stripGroup(stripAnchors(source));
+
+		if (isLiteral(body)) {
+			return new KeywordPattern(source, Kind.LITERAL, CaseFolding.foldAscii(body), null, null);
+		}
+		if (body.endsWith(".*") && isLiteral(body.substring(0, body.length() - 2))) {
+			String prefix = CaseFolding.foldAscii(body.substring(0, body.length() - 2));
+			return new KeywordPattern(source, Kind.PREFIX, prefix, null, null);
+		}
+		if (body.indexOf('|') >= 0) {
+			Set<String> alternatives = new HashSet<>();
+			for (String alternative : body.split("\\|", -1)) {
+				if (!isLiteral(alternative)) {
+					alternatives = null;
+					break;
+				}
+				alternatives.add(CaseFolding.foldAscii(alternative));
+			}
+			if (alternatives != null) {
+				return new KeywordPattern(source, Kind.ALTERNATION, null, alternatives, null);
+			}
+		}
+		return new KeywordPattern(source, Kind.REGEX, null, null, Pattern.compile(source, Pattern.CASE_INSENSITIVE));
+	}
+
+	/**
+	 * Checks whether the whole argument matches the pattern, ignoring the case
+	 *
+	 * @param argument The argument to check
+	 *
+	 * @return True if it matches
+	 */
+	boolean matches(@Nullable String argument) {
+		if (argument == null) {
+			return false;
+		}
+		switch (kind) {
+			case LITERAL:
+				return CaseFolding.asciiFoldedEquals(literal, argument);
+			case PREFIX:
+				return CaseFolding.asciiFoldedStartsWith(argument, literal);
+			case ALTERNATION:
+				return alternatives.contains(CaseFolding.foldAscii(argument));
+			default:
+				return pattern.matcher(argument).matches();
+		}
+	}
+
+	/**
+	 * @return The source of the pattern
+	 */
+	@Nonnull
+	String getSource() {
+		return source;
+	}
+
+	/**
+	 * @return How the pattern is matched
+	 */
+	@Nonnull
+	Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Returns the compiled pattern. Only compiled on the first call, if it isn't needed for matching.
+	 *
+	 * @return The compiled pattern. Case insensitive.
+	 */
+	@Nonnull
+	Pattern toPattern() {
+		Pattern pattern = this.pattern;
+		if (pattern == null) {
+			pattern = Pattern.compile(source, Pattern.CASE_INSENSITIVE);
+			this.pattern = pattern;
+		}
+		return pattern;
+	}
+
+	/**
+	 * @param source The source of the pattern
+	 *
+	 * @return The source without a leading "^" and a trailing "$"
+	 */
+	private static String stripAnchors(String source) {
+		int start = source.startsWith("^") ? 1 : 0;
+		int end = source.length();
+		if (end > start && source.endsWith("$") && !source.endsWith("\\$")) {
+			end--;
+		}
+		return source.substring(start, end);
+	}
+
+	/**
+	 * @param body The pattern without anchors
+	 *
+	 * @return The pattern without a group around all of it, if it contains no other group
+	 */
+	private static String stripGroup(String body) {
+		if (!body.startsWith("(") || !body.endsWith(")")) {
+			return body;
+		}
+		int start = body.startsWith("(?:") ? 3 : 1;
+		String inner = body.substring(start, body.length() - 1);
+		if (inner.indexOf('(') >= 0 || inner.indexOf(')') >= 0) {
+			return body;
+		}
+		return inner;
+	}
+
+	/**
+	 * @param string The string to check
+	 *
+	 * @return True if the string contains only ASCII chars, that have no special meaning in a regex
+	 */
+	private static boolean isLiteral(String string) {
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c > 127 || META_CHARS.indexOf(c) >= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * How a pattern is matched
+	 */
+	enum Kind {
+		/**
+		 * The argument equals the literal
+		 */
+		LITERAL,
+		/**
+		 * The argument starts with the literal
+		 */
+		PREFIX,
+		/**
+		 * The argument equals one of the alternatives
+		 */
+		ALTERNATION,
+		/**
+		 * The argument is matched by the regex
+		 */
+		REGEX
+	}
+}
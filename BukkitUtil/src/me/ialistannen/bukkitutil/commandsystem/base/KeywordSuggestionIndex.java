@@ -0,0 +1,172 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTree.InvalidationListener;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTree.InvalidationReason;
+import me.ialistannen.bukkitutil.commandsystem.util.BKTree;
+import org.bukkit.command.CommandSender;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a {@link BKTree} with the keywords of the children for every level of the tree. Used to offer "did you
+ * mean" suggestions, if a command wasn't found.
+ * <p>
+ * The index is kept up to date by listening to the invalidations of the {@link CommandTree}. Only the level that
+ * changed is touched.
+ */
+public class KeywordSuggestionIndex implements InvalidationListener {
+
+	private final CommandRoot root;
+	private final Map<AbstractCommandNode, BKTree<AbstractCommandNode>> levels = new HashMap<>();
+
+	/**
+	 * @param root The root of the tree to index
+	 */
+	KeywordSuggestionIndex(@Nonnull CommandRoot root) {
+		this.root = root;
+		rebuild();
+	}
+
+	/**
+	 * Rebuilds the whole index. Needed when the keywords changed, e.g. when the language was switched.
+	 */
+	@SuppressWarnings("WeakerAccess")
+	public void rebuild() {
+		levels.clear();
+		indexSubtree(root);
+	}
+
+	@Override
+	public void onPreInvalidate(InvalidationReason reason, AbstractCommandNode parent, AbstractCommandNode child) {
+		// we only care about the result
+	}
+
+	@Override
+	public void onPostInvalidate(InvalidationReason reason, AbstractCommandNode parent, AbstractCommandNode child) {
+		switch (reason) {
+			case CHILD_ADDED:
+				levels.computeIfAbsent(parent, node -> new BKTree<>()).add(child.getKeyword(), child);
+				indexSubtree(child);
+				break;
+			case CHILD_REMOVED:
+				// a BK-Tree can't remove, so just rebuild this single level
+				rebuildLevel(parent);
+				removeSubtree(child);
+				break;
+		}
+	}
+
+	/**
+	 * Suggests keywords for a command that couldn't be found.
+	 * <p>
+	 * The arguments are followed down the tree as long as they match. The first one that doesn't is compared to the
+	 * keywords of the children at that level.
+	 *
+	 * @param sender The sender. Only commands he can use are suggested.
+	 * @param args   The arguments the user entered
+	 * @param limit  The maximum amount of suggestions
+	 *
+	 * @return The suggested keywords, closest first. Empty if none are close enough.
+	 */
+	@Nonnull
+	public List<String> suggest(@Nonnull CommandSender sender, @Nonnull String[] args, int limit) {
+		AbstractCommandNode current = root;
+
+		for (String argument : args) {
+			AbstractCommandNode next = findMatchingChild(current, argument, sender);
+			if (next != null) {
+				current = next;
+				continue;
+			}
+
+			BKTree<AbstractCommandNode> level = levels.get(current);
+			if (level == null) {
+				return Collections.emptyList();
+			}
+
+			List<String> suggestions = new ArrayList<>(limit);
+			// the closest keywords may belong to nodes the sender can't use, so only limit the usable ones
+			int maxDistance = getMaxDistance(argument);
+			for (BKTree.Match<AbstractCommandNode> match : level.search(argument, maxDistance, Integer.MAX_VALUE)) {
+				if (suggestions.size() >= limit) {
+					break;
+				}
+				boolean usable = match.getValues().stream()
+						.anyMatch(node -> !node.isNotAble(sender) && !node.isForbidden(sender));
+				if (usable) {
+					suggestions.add(match.getKey());
+				}
+			}
+			return suggestions;
+		}
+
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @param parent   The parent node
+	 * @param argument The argument to match
+	 * @param sender   The sender who needs access to it
+	 *
+	 * @return The matching child or null if none
+	 */
+	private AbstractCommandNode findMatchingChild(AbstractCommandNode parent, String argument, CommandSender sender) {
+		for (AbstractCommandNode child : parent.getChildren()) {
+			if (child.matchesPattern(argument) && !child.isNotAble(sender) && !child.isForbidden(sender)) {
+				return child;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The allowed edit distance grows a bit with the length, so short typos don't suggest everything.
+	 *
+	 * @param argument The argument to get it for
+	 *
+	 * @return The maximum edit distance
+	 */
+	private static int getMaxDistance(String argument) {
+		return Math.max(1, Math.min(3, argument.length() / 3));
+	}
+
+	/**
+	 * @param node The node whose children to index (recursively)
+	 */
+	private void indexSubtree(AbstractCommandNode node) {
+		rebuildLevel(node);
+		for (AbstractCommandNode child : node.getChildren()) {
+			indexSubtree(child);
+		}
+	}
+
+	/**
+	 * @param node The node whose direct children to index
+	 */
+	private void rebuildLevel(AbstractCommandNode node) {
+		if (node.getChildren().isEmpty()) {
+			levels.remove(node);
+			return;
+		}
+		BKTree<AbstractCommandNode> level = new BKTree<>();
+		for (AbstractCommandNode child : node.getChildren()) {
+			level.add(child.getKeyword(), child);
+		}
+		levels.put(node, level);
+	}
+
+	/**
+	 * @param node The node whose levels to drop (recursively)
+	 */
+	private void removeSubtree(AbstractCommandNode node) {
+		levels.remove(node);
+		for (AbstractCommandNode child : node.getChildren()) {
+			removeSubtree(child);
+		}
+	}
+}
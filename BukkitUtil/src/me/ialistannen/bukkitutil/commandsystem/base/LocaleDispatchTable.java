@@ -0,0 +1,137 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import me.ialistannen.languageSystem.MessageProvider;
+import org.bukkit.command.CommandSender;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The keywords and patterns of all nodes in one additional locale.
+ * <p>
+ * The nodes themselves only know the locale their language is set to. This table translates them with a second
+ * language, once, and keeps the results in an {@link OrdinalTable}, so resolving a command
+ * for a sender of that locale is an array access per node. Nodes added later are translated the first time they
+ * are looked at.
+ */
+class LocaleDispatchTable {
+
+	private final Locale locale;
+	private final MessageProvider language;
+	private final OrdinalTable<NodeMetadata> byOrdinal = new OrdinalTable<>();
+
+	/**
+	 * @param locale   The locale of this table
+	 * @param language The language, set to the locale
+	 * @param root     The root of the tree, whose nodes are translated right away
+	 */
+	LocaleDispatchTable(@Nonnull Locale locale, @Nonnull MessageProvider language, @Nonnull CommandRoot root) {
+		this.locale = locale;
+		this.language = language;
+
+		byOrdinal.putAll(root.getAllChildren(), this::resolve);
+	}
+
+	/**
+	 * Creates a new table with the same language, e.g. after its files were reloaded
+	 *
+	 * @param root The root of the tree
+	 *
+	 * @return The new table
+	 */
+	@Nonnull
+	LocaleDispatchTable rebuild(@Nonnull CommandRoot root) {
+		return new LocaleDispatchTable(locale, language, root);
+	}
+
+	/**
+	 * Returns the information of the node in this locale, translating it if it is new
+	 *
+	 * @param node The node
+	 *
+	 * @return The translated information
+	 */
+	@Nonnull
+	NodeMetadata metadataOf(@Nonnull AbstractCommandNode node) {
+		return byOrdinal.computeIfAbsent(node, this::resolve);
+	}
+
+	/**
+	 * @param node The node to translate
+	 *
+	 * @return The translated information
+	 */
+	private NodeMetadata resolve(AbstractCommandNode node) {
+		return NodeMetadata.resolve(language, node.getBaseKey(), locale);
+	}
+
+	/**
+	 * Wraps a context, so that it matches the arguments and returns the keywords in this locale
+	 *
+	 * @param context The context to wrap
+	 *
+	 * @return The wrapped context
+	 */
+	@Nonnull
+	ResolutionContext wrap(@Nonnull ResolutionContext context) {
+		return new LocalizedContext(context);
+	}
+
+	/**
+	 * Asks the wrapped context for everything, but the keywords and patterns
+	 */
+	private class LocalizedContext extends ResolutionContext {
+
+		private final ResolutionContext delegate;
+
+		/**
+		 * @param delegate The context to ask for the other checks
+		 */
+		LocalizedContext(ResolutionContext delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		boolean matches(@Nonnull AbstractCommandNode node, @Nullable String argument) {
+			if (SiblingPatterns.overridesMatching(node)) {
+				// nodes with their own matching decide themselves, in every locale
+				return node.matchesPattern(argument);
+			}
+			return metadataOf(node).matches(argument);
+		}
+
+		@Override
+		SiblingPatterns getChildPatterns(@Nonnull AbstractCommandNode node) {
+			// merged from the patterns of the tree's locale
+			return null;
+		}
+
+		@Nonnull
+		@Override
+		CommandResultType checkAccess(@Nonnull AbstractCommandNode node, @Nonnull CommandSender sender) {
+			return delegate.checkAccess(node, sender);
+		}
+
+		@Nonnull
+		@Override
+		List<String> getUsableKeywords(@Nonnull AbstractCommandNode node, @Nonnull CommandSender sender) {
+			List<String> keywords = new ArrayList<>();
+			for (AbstractCommandNode child : getChildren(node)) {
+				if (checkAccess(child, sender) == CommandResultType.SUCCESSFUL) {
+					keywords.add(metadataOf(child).getKeyword());
+				}
+			}
+			return keywords;
+		}
+
+		@Nonnull
+		@Override
+		Collection<AbstractCommandNode> getChildren(@Nonnull AbstractCommandNode node) {
+			return delegate.getChildren(node);
+		}
+	}
+}
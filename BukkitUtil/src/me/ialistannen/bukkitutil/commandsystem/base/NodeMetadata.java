@@ -0,0 +1,143 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import me.ialistannen.bukkitutil.other.CaseFolding;
+import me.ialistannen.languageSystem.MessageProvider;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * The translated information of a node in one locale.
+ * <p>
+ * Resolved once per locale by {@link AbstractCommandNode#getMetadata()}, so looking up the keyword, rendering the
+ * usage or matching an argument doesn't go through the language every time. Dropped when the language files are
+ * reloaded.
+ */
+public final class NodeMetadata {
+
+	private final Locale locale;
+	private final String keyword;
+	private final String foldedKeyword;
+	private final String name;
+	private final String usage;
+	private final String description;
+	private final KeywordPattern pattern;
+
+	/**
+	 * @param locale      The locale it was resolved in
+	 * @param keyword     The keyword
+	 * @param name        The name
+	 * @param usage       The usage
+	 * @param description The description
+	 * @param pattern     The analysed pattern
+	 */
+	NodeMetadata(@Nonnull Locale locale, @Nonnull String keyword, @Nonnull String name, @Nonnull String usage,
+	             @Nonnull String description, @Nonnull KeywordPattern pattern) {
+		this.locale = locale;
+		this.keyword = keyword.intern();
+		this.foldedKeyword = CaseFolding.fold(keyword).intern();
+		this.name = name.intern();
+		this.usage = usage;
+		this.description = description;
+		this.pattern = pattern;
+	}
+
+	/**
+	 * Translates the information of a node
+	 *
+	 * @param language The language to translate with. Must be set to the locale.
+	 * @param baseKey  The base key of the node
+	 * @param locale   The locale the language is set to
+	 *
+	 * @return The translated information
+	 */
+	@Nonnull
+	static NodeMetadata resolve(@Nonnull MessageProvider language, @Nonnull String baseKey, @Nonnull Locale locale) {
+		return new NodeMetadata(
+				locale,
+				language.tr(CommandInformationKey.KEYWORD.applyTo(baseKey)),
+				language.tr(CommandInformationKey.NAME.applyTo(baseKey)),
+				language.tr(CommandInformationKey.USAGE.applyTo(baseKey)),
+				language.tr(CommandInformationKey.DESCRIPTION.applyTo(baseKey)),
+				KeywordPattern.compile(language.tr(CommandInformationKey.PATTERN.applyTo(baseKey)))
+		);
+	}
+
+	/**
+	 * @return The locale it was resolved in
+	 */
+	@SuppressWarnings("unused")
+	@Nonnull
+	public Locale getLocale() {
+		return locale;
+	}
+
+	/**
+	 * @return The keyword of the node. Interned.
+	 */
+	@Nonnull
+	public String getKeyword() {
+		return keyword;
+	}
+
+	/**
+	 * @return The keyword of the node, folded by {@link CaseFolding#fold(String)}. Interned.
+	 */
+	@Nonnull
+	public String getFoldedKeyword() {
+		return foldedKeyword;
+	}
+
+	/**
+	 * @return The name of the node. Interned.
+	 */
+	@Nonnull
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The usage of the node
+	 */
+	@Nonnull
+	public String getUsage() {
+		return usage;
+	}
+
+	/**
+	 * @return The description of the node
+	 */
+	@Nonnull
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * @return The compiled pattern of the node. Case insensitive.
+	 */
+	@Nonnull
+	public Pattern getPattern() {
+		return pattern.toPattern();
+	}
+
+	/**
+	 * @return The analysed pattern of the node
+	 */
+	@Nonnull
+	KeywordPattern getKeywordPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Checks whether an argument matches the pattern of the node, without a regex if the pattern is simple enough
+	 *
+	 * @param argument The argument. May be null, if there are no arguments left.
+	 *
+	 * @return True if the whole argument matches, ignoring the case
+	 */
+	public boolean matches(@Nullable String argument) {
+		return pattern.matches(argument);
+	}
+}
@@ -0,0 +1,69 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import javax.annotation.Nonnull;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Hands out the {@link AbstractCommandNode#getOrdinal() ordinals} of the nodes.
+ * <p>
+ * The ordinal of a node is given to a new one once the node was garbage collected, smallest first. So replacing a
+ * tree or reloading a plugin doesn't make the ordinals, and every array indexed by them, grow forever.
+ */
+final class OrdinalPool {
+
+	private final ReferenceQueue<AbstractCommandNode> collected = new ReferenceQueue<>();
+	// the references must stay reachable to be enqueued
+	private final Set<OrdinalReference> references = new HashSet<>();
+	private final PriorityQueue<Integer> free = new PriorityQueue<>();
+	private int bound;
+
+	/**
+	 * Assigns an ordinal to a node
+	 *
+	 * @param node The new node
+	 *
+	 * @return The ordinal of the node
+	 */
+	synchronized int acquire(@Nonnull AbstractCommandNode node) {
+		Reference<? extends AbstractCommandNode> reference;
+		while ((reference = collected.poll()) != null) {
+			OrdinalReference ordinalReference = (OrdinalReference) reference;
+			references.remove(ordinalReference);
+			free.add(ordinalReference.ordinal);
+		}
+
+		Integer reused = free.poll();
+		int ordinal = reused == null ? bound++ : reused;
+		references.add(new OrdinalReference(node, ordinal, collected));
+		return ordinal;
+	}
+
+	/**
+	 * @return The largest ordinal handed out so far, plus one
+	 */
+	synchronized int getBound() {
+		return bound;
+	}
+
+	/**
+	 * Frees the ordinal of a node once it is collected
+	 */
+	private static class OrdinalReference extends PhantomReference<AbstractCommandNode> {
+		private final int ordinal;
+
+		/**
+		 * @param node    The node
+		 * @param ordinal Its ordinal
+		 * @param queue   The queue to enqueue it in once the node is collected
+		 */
+		OrdinalReference(AbstractCommandNode node, int ordinal, ReferenceQueue<AbstractCommandNode> queue) {
+			super(node, queue);
+			this.ordinal = ordinal;
+		}
+	}
+}
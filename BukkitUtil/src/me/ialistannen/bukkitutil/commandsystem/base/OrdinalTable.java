@@ -0,0 +1,155 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A value per node, kept in an array indexed by the {@link AbstractCommandNode#getOrdinal() ordinal} of the node.
+ * <p>
+ * Reading is an array access and never locks. The array is copied on every insert, so readers never see a half
+ * written one. As the ordinal of a collected node is given to a new one, every slot remembers its node and a value
+ * left behind by a collected node is replaced instead of returned.
+ *
+ * @param <T> The type of the values
+ */
+public final class OrdinalTable<T> {
+
+	private volatile Slot<T>[] slots = newSlots(0);
+
+	/**
+	 * Returns the value of a node
+	 *
+	 * @param node The node
+	 *
+	 * @return The value of the node or null if it has none
+	 */
+	@Nullable
+	public T get(@Nonnull AbstractCommandNode node) {
+		Slot<T>[] current = slots;
+		int ordinal = node.getOrdinal();
+		if (ordinal < current.length) {
+			Slot<T> slot = current[ordinal];
+			if (slot != null && slot.node.get() == node) {
+				return slot.value;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the value of a node, computing it if it has none
+	 *
+	 * @param node    The node
+	 * @param compute Computes the value. Called at most once per node and table.
+	 *
+	 * @return The value of the node
+	 */
+	@Nonnull
+	public T computeIfAbsent(@Nonnull AbstractCommandNode node,
+	                         @Nonnull Function<? super AbstractCommandNode, ? extends T> compute) {
+		T value = get(node);
+		if (value != null) {
+			return value;
+		}
+		return insert(node, compute);
+	}
+
+	/**
+	 * Computes the values of many nodes, copying the array only once
+	 *
+	 * @param nodes   The nodes
+	 * @param compute Computes the value of a node
+	 */
+	public synchronized void putAll(@Nonnull Collection<? extends AbstractCommandNode> nodes,
+	                                @Nonnull Function<? super AbstractCommandNode, ? extends T> compute) {
+		int length = slots.length;
+		for (AbstractCommandNode node : nodes) {
+			length = Math.max(length, node.getOrdinal() + 1);
+		}
+		Slot<T>[] grown = Arrays.copyOf(slots, length);
+		for (AbstractCommandNode node : nodes) {
+			grown[node.getOrdinal()] = new Slot<>(node, compute.apply(node));
+		}
+		slots = grown;
+	}
+
+	/**
+	 * Returns all values, including the ones of collected nodes whose slot wasn't reused yet
+	 *
+	 * @return The values, in the order of the ordinals
+	 */
+	@Nonnull
+	public List<T> values() {
+		List<T> values = new ArrayList<>();
+		for (Slot<T> slot : slots) {
+			if (slot != null) {
+				values.add(slot.value);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Removes all values
+	 */
+	public synchronized void clear() {
+		slots = newSlots(0);
+	}
+
+	/**
+	 * @param node    The node
+	 * @param compute Computes the value
+	 *
+	 * @return The value of the node
+	 */
+	private synchronized T insert(AbstractCommandNode node,
+	                              Function<? super AbstractCommandNode, ? extends T> compute) {
+		T existing = get(node);
+		if (existing != null) {
+			return existing;
+		}
+		int ordinal = node.getOrdinal();
+		Slot<T>[] grown = Arrays.copyOf(slots, Math.max(ordinal + 1, slots.length));
+		T value = compute.apply(node);
+		grown[ordinal] = new Slot<>(node, value);
+		slots = grown;
+		return value;
+	}
+
+	/**
+	 * @param length The length
+	 * @param <T>    The type of the values
+	 *
+	 * @return A new array of slots
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> Slot<T>[] newSlots(int length) {
+		return (Slot<T>[]) new Slot[length];
+	}
+
+	/**
+	 * The value of one node
+	 *
+	 * @param <T> The type of the value
+	 */
+	private static class Slot<T> {
+		// weak, so the table doesn't keep removed nodes alive
+		private final WeakReference<AbstractCommandNode> node;
+		private final T value;
+
+		/**
+		 * @param node  The node
+		 * @param value Its value
+		 */
+		Slot(AbstractCommandNode node, T value) {
+			this.node = new WeakReference<>(node);
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,364 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTree.InvalidationListener;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTree.InvalidationReason;
+import org.bukkit.command.CommandSender;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the part of the tree a group of senders may see.
+ * <p>
+ * Senders are grouped by a fingerprint: Their class, the result of every distinct
+ * {@link AbstractCommandNode#getRequiredPermission() required permission} and the result of
+ * {@link AbstractCommandNode#isNotAble(CommandSender)} for every node, as that may run an arbitrary check. Nodes
+ * without a required permission are checked completely and become part of the fingerprint too. All senders with the
+ * same fingerprint share one {@link ProjectedView}, which knows the access result for every node.
+ * <p>
+ * The views are dropped when the tree changes. Nothing reports changed permissions, so the fingerprint is computed
+ * again for every lookup by default. {@link #setFingerprintTimeout(long, TimeUnit)} remembers it for a while, call
+ * {@link #invalidate(CommandSender)} then if you know his permissions changed. The {@link CommandTree} only uses the
+ * views for finding and completing commands, executing always checks the permissions of the sender again.
+ * <p>
+ * The views may be read and invalidated from any thread.
+ */
+public class PermissionProjections implements InvalidationListener {
+
+	/**
+	 * More distinct groups than that are unlikely. If it happens, start over.
+	 */
+	private static final int MAX_VIEWS = 256;
+
+	private final CommandRoot root;
+
+	private final Map<Fingerprint, ProjectedView> views = new ConcurrentHashMap<>();
+	private final Map<CommandSender, CachedFingerprint> fingerprints = Collections.synchronizedMap(new WeakHashMap<>());
+
+	// null until the first fingerprint after an invalidation
+	private volatile Checks checks;
+	// counts the invalidations, so checks collected from an older tree aren't kept
+	private final AtomicLong generation = new AtomicLong();
+
+	private volatile long fingerprintTimeoutNanos;
+	private volatile CommandMetrics metrics = CommandMetrics.NONE;
+
+	/**
+	 * @param root The root of the tree
+	 */
+	PermissionProjections(@Nonnull CommandRoot root) {
+		this.root = root;
+	}
+
+	/**
+	 * Sets how long the fingerprint of a sender is remembered. 0 by default.
+	 *
+	 * @param timeout The timeout. 0 to compute it every time.
+	 * @param unit    The unit of the timeout
+	 */
+	@SuppressWarnings("unused")
+	public void setFingerprintTimeout(long timeout, @Nonnull TimeUnit unit) {
+		this.fingerprintTimeoutNanos = unit.toNanos(timeout);
+		fingerprints.clear();
+	}
+
+	/**
+	 * @param metrics The metrics to report the hit rate to
+	 */
+	void setMetrics(@Nonnull CommandMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Forgets the fingerprint of a sender. Call it after changing his permissions.
+	 *
+	 * @param sender The sender whose permissions changed
+	 */
+	@SuppressWarnings("unused")
+	public void invalidate(@Nonnull CommandSender sender) {
+		fingerprints.remove(sender);
+	}
+
+	/**
+	 * Drops all views and fingerprints
+	 */
+	@SuppressWarnings("WeakerAccess")
+	public synchronized void invalidateAll() {
+		generation.incrementAndGet();
+		checks = null;
+		views.clear();
+		fingerprints.clear();
+	}
+
+	/**
+	 * Returns the amount of views currently cached
+	 *
+	 * @return The amount of distinct permission groups seen since the last invalidation
+	 */
+	@SuppressWarnings("unused")
+	public int getViewCount() {
+		return views.size();
+	}
+
+	@Override
+	public void onPreInvalidate(InvalidationReason reason, AbstractCommandNode parent, AbstractCommandNode child) {
+		// we only care about the result
+	}
+
+	@Override
+	public void onPostInvalidate(InvalidationReason reason, AbstractCommandNode parent, AbstractCommandNode child) {
+		invalidateAll();
+	}
+
+	/**
+	 * Returns the view for the sender, building it if this is the first sender with his permissions
+	 *
+	 * @param sender The sender
+	 *
+	 * @return The view for his permission group
+	 */
+	@Nonnull
+	ProjectedView viewFor(@Nonnull CommandSender sender) {
+		Checks checks = this.checks;
+		if (checks == null) {
+			long collectedIn = generation.get();
+			checks = collectChecks();
+			synchronized (this) {
+				if (generation.get() == collectedIn) {
+					this.checks = checks;
+				}
+			}
+		}
+		Fingerprint fingerprint = fingerprintOf(sender, checks);
+
+		ProjectedView view = views.get(fingerprint);
+		metrics.onCacheAccess(CommandMetrics.Cache.PERMISSION_VIEW, view != null);
+		if (view == null) {
+			if (views.size() >= MAX_VIEWS) {
+				views.clear();
+			}
+			view = new ProjectedView(root, sender);
+			// built from a tree that changed meanwhile, use it only this once
+			if (this.checks == checks) {
+				views.put(fingerprint, view);
+			}
+		}
+		return view;
+	}
+
+	/**
+	 * @param sender The sender to get it for
+	 * @param checks The checks making up the fingerprint
+	 *
+	 * @return The fingerprint of the sender
+	 */
+	private Fingerprint fingerprintOf(CommandSender sender, Checks checks) {
+		long now = System.nanoTime();
+		long timeout = fingerprintTimeoutNanos;
+		CachedFingerprint cached = timeout > 0 ? fingerprints.get(sender) : null;
+		if (cached != null && cached.checks == checks && now - cached.computedAt < timeout) {
+			metrics.onCacheAccess(CommandMetrics.Cache.PERMISSION_FINGERPRINT, true);
+			return cached.fingerprint;
+		}
+		metrics.onCacheAccess(CommandMetrics.Cache.PERMISSION_FINGERPRINT, false);
+
+		List<String> permissions = checks.permissions;
+		List<AbstractCommandNode> permissionNodes = checks.permissionNodes;
+		List<AbstractCommandNode> opaqueNodes = checks.opaqueNodes;
+
+		// 1 bit per permission, 1 per node with a permission, 2 per opaque node
+		long[] bits = new long[(permissions.size() + permissionNodes.size() + opaqueNodes.size() * 2 + 63) / 64];
+		int index = 0;
+		for (String permission : permissions) {
+			if (sender.hasPermission(permission)) {
+				bits[index / 64] |= 1L << (index % 64);
+			}
+			index++;
+		}
+		for (AbstractCommandNode node : permissionNodes) {
+			if (node.isNotAble(sender)) {
+				bits[index / 64] |= 1L << (index % 64);
+			}
+			index++;
+		}
+		for (AbstractCommandNode node : opaqueNodes) {
+			int result = ResolutionContext.DIRECT.checkAccess(node, sender).ordinal();
+			bits[index / 64] |= ((long) (result & 1)) << (index % 64);
+			bits[(index + 1) / 64] |= ((long) ((result >> 1) & 1)) << ((index + 1) % 64);
+			index += 2;
+		}
+
+		Fingerprint fingerprint = new Fingerprint(sender.getClass(), bits);
+		if (timeout > 0) {
+			fingerprints.put(sender, new CachedFingerprint(fingerprint, checks, now));
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Collects the distinct permissions, the nodes with a required permission and the nodes with a more complex check
+	 *
+	 * @return The collected checks
+	 */
+	private Checks collectChecks() {
+		Set<String> permissionSet = new LinkedHashSet<>();
+		List<AbstractCommandNode> withPermission = new ArrayList<>();
+		List<AbstractCommandNode> opaque = new ArrayList<>();
+
+		for (AbstractCommandNode node : root.getAllChildren()) {
+			String permission = node.getRequiredPermission();
+			if (permission == null) {
+				opaque.add(node);
+				continue;
+			}
+			if (!permission.isEmpty()) {
+				permissionSet.add(permission);
+			}
+			withPermission.add(node);
+		}
+
+		return new Checks(new ArrayList<>(permissionSet), withPermission, opaque);
+	}
+
+	/**
+	 * The checks making up a fingerprint, collected from one version of the tree
+	 */
+	private static class Checks {
+		private final List<String> permissions;
+		private final List<AbstractCommandNode> permissionNodes;
+		private final List<AbstractCommandNode> opaqueNodes;
+
+		/**
+		 * @param permissions     The distinct permissions
+		 * @param permissionNodes The nodes with a required permission
+		 * @param opaqueNodes     The nodes with a more complex check
+		 */
+		Checks(List<String> permissions, List<AbstractCommandNode> permissionNodes,
+		       List<AbstractCommandNode> opaqueNodes) {
+			this.permissions = permissions;
+			this.permissionNodes = permissionNodes;
+			this.opaqueNodes = opaqueNodes;
+		}
+	}
+
+	/**
+	 * The access results for every node, as seen by one permission group
+	 */
+	static class ProjectedView extends ResolutionContext {
+
+		private final Map<AbstractCommandNode, CommandResultType> access = new HashMap<>();
+		private final Map<AbstractCommandNode, List<String>> usableKeywords = new HashMap<>();
+
+		/**
+		 * @param root   The root of the tree
+		 * @param sender A sender of the group. Not kept.
+		 */
+		private ProjectedView(CommandRoot root, CommandSender sender) {
+			project(root, sender);
+		}
+
+		/**
+		 * @param node   The node to project (recursively)
+		 * @param sender The sender to check against
+		 */
+		private void project(AbstractCommandNode node, CommandSender sender) {
+			List<String> keywords = new ArrayList<>();
+			for (AbstractCommandNode child : node.getChildren()) {
+				CommandResultType result = ResolutionContext.DIRECT.checkAccess(child, sender);
+				access.put(child, result);
+				if (result == CommandResultType.SUCCESSFUL) {
+					keywords.add(child.getKeyword());
+				}
+				project(child, sender);
+			}
+			usableKeywords.put(node, Collections.unmodifiableList(keywords));
+		}
+
+		@Nonnull
+		@Override
+		CommandResultType checkAccess(@Nonnull AbstractCommandNode node, @Nonnull CommandSender sender) {
+			CommandResultType result = access.get(node);
+			if (result == null) {
+				return super.checkAccess(node, sender);
+			}
+			return result;
+		}
+
+		@Nonnull
+		@Override
+		List<String> getUsableKeywords(@Nonnull AbstractCommandNode node, @Nonnull CommandSender sender) {
+			List<String> keywords = usableKeywords.get(node);
+			if (keywords == null) {
+				return super.getUsableKeywords(node, sender);
+			}
+			return keywords;
+		}
+	}
+
+	/**
+	 * The fingerprint of a sender
+	 */
+	private static class Fingerprint {
+		private final Class<?> senderType;
+		private final long[] bits;
+		private final int hashCode;
+
+		/**
+		 * @param senderType The class of the sender
+		 * @param bits       The results of the checks
+		 */
+		Fingerprint(Class<?> senderType, long[] bits) {
+			this.senderType = senderType;
+			this.bits = bits;
+			this.hashCode = 31 * senderType.hashCode() + Arrays.hashCode(bits);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			Fingerprint that = (Fingerprint) o;
+			return senderType == that.senderType && Arrays.equals(bits, that.bits);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	/**
+	 * A fingerprint and the time it was computed at
+	 */
+	private static class CachedFingerprint {
+		private final Fingerprint fingerprint;
+		private final Checks checks;
+		private final long computedAt;
+
+		/**
+		 * @param fingerprint The fingerprint
+		 * @param checks      The checks it was computed with
+		 * @param computedAt  The {@link System#nanoTime()} it was computed at
+		 */
+		CachedFingerprint(Fingerprint fingerprint, Checks checks, long computedAt) {
+			this.fingerprint = fingerprint;
+			this.checks = checks;
+			this.computedAt = computedAt;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import org.bukkit.command.CommandSender;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Performs the single checks needed while resolving a command in the tree.
+ * <p>
+ * The default instance ({@link #DIRECT}) just asks the nodes. Subclasses may remember the answers, if they are
+ * asked the same question more than once.
+ */
+class ResolutionContext {
+
+	/**
+	 * Asks the node every time
+	 */
+	static final ResolutionContext DIRECT = new ResolutionContext();
+
+	/**
+	 * Checks whether the argument matches the pattern of the node
+	 *
+	 * @param node     The node to check
+	 * @param argument The argument. May be null, if there are no arguments left.
+	 *
+	 * @return True if the argument matches the node
+	 *
+	 * @see AbstractCommandNode#matchesPattern(String)
+	 */
+	boolean matches(@Nonnull AbstractCommandNode node, @Nullable String argument) {
+		return node.matchesPattern(argument);
+	}
+
+	/**
+	 * Checks whether the sender may use the node
+	 *
+	 * @param node   The node to check
+	 * @param sender The sender to check
+	 *
+	 * @return {@link CommandResultType#WRONG_SENDER}, {@link CommandResultType#PERMISSION_DENIED} or
+	 * {@link CommandResultType#SUCCESSFUL} if he may use it
+	 */
+	@Nonnull
+	CommandResultType checkAccess(@Nonnull AbstractCommandNode node, @Nonnull CommandSender sender) {
+		if (node.isNotAble(sender)) {
+			return CommandResultType.WRONG_SENDER;
+		}
+		if (node.isForbidden(sender)) {
+			return CommandResultType.PERMISSION_DENIED;
+		}
+		return CommandResultType.SUCCESSFUL;
+	}
+
+	/**
+	 * Returns the keywords of the children the sender may use
+	 *
+	 * @param node   The node whose children to check
+	 * @param sender The sender to check
+	 *
+	 * @return The keywords of all usable children
+	 */
+	@Nonnull
+	List<String> getUsableKeywords(@Nonnull AbstractCommandNode node, @Nonnull CommandSender sender) {
+		List<String> keywords = new ArrayList<>();
+		for (AbstractCommandNode child : getChildren(node)) {
+			if (checkAccess(child, sender) == CommandResultType.SUCCESSFUL) {
+				keywords.add(child.getKeyword());
+			}
+		}
+		return keywords;
+	}
+
+	/**
+	 * Returns the merged patterns of the children of the node
+	 *
+	 * @param node The node whose children are checked
+	 *
+	 * @return The merged patterns or null if the children have to be checked one by one
+	 *
+	 * @see SiblingPatterns
+	 */
+	@Nullable
+	SiblingPatterns getChildPatterns(@Nonnull AbstractCommandNode node) {
+		return node.getChildPatterns();
+	}
+
+	/**
+	 * Returns the children of the node to search in
+	 *
+	 * @param node The node to get the children for
+	 *
+	 * @return The direct children of the node
+	 */
+	@Nonnull
+	Collection<AbstractCommandNode> getChildren(@Nonnull AbstractCommandNode node) {
+		return node.getChildren();
+	}
+}
@@ -0,0 +1,164 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The patterns of all children of a node, merged into one alternation "(p0)|(p1)|...".
+ * <p>
+ * One match of the merged pattern tells whether any child matches and which one matches first. The children before
+ * it can't match, the ones after it still have to be checked one by one, as a regex only reports the first matching
+ * alternative. Children added after it was built are unknown to it and checked one by one too.
+ * <p>
+ * Built by the {@link CommandTree} if {@link CommandTree#setMergedPatterns(boolean)} is enabled.
+ */
+class SiblingPatterns {
+
+	/**
+	 * The minimum amount of children to merge the patterns for
+	 */
+	private static final int MIN_CHILDREN = 2;
+
+	// looked up on every match of a localized dispatch, so the reflection is done once per class
+	private static final ClassValue<Boolean> OVERRIDES_MATCHING = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			try {
+				return type.getMethod("matchesPattern", String.class).getDeclaringClass() != AbstractCommandNode.class;
+			} catch (NoSuchMethodException e) {
+				return true;
+			}
+		}
+	};
+
+	private final Pattern merged;
+	// the number of the group around the pattern of each child
+	private final int[] groups;
+	private final Map<AbstractCommandNode, Integer> indices;
+
+	/**
+	 * @param merged  The merged pattern
+	 * @param groups  The group of each child in it
+	 * @param indices The index of each child
+	 */
+	private SiblingPatterns(Pattern merged, int[] groups, Map<AbstractCommandNode, Integer> indices) {
+		this.merged = merged;
+		this.groups = groups;
+		this.indices = indices;
+	}
+
+	/**
+	 * Merges the patterns of the children, if it pays off
+	 *
+	 * @param children The children of a node
+	 *
+	 * @return The merged patterns or null if there are too few children, none needs a regex or one can't be merged
+	 */
+	@Nullable
+	static SiblingPatterns build(@Nonnull Iterable<AbstractCommandNode> children) {
+		StringBuilder source = new StringBuilder();
+		Map<AbstractCommandNode, Integer> indices = new IdentityHashMap<>();
+		int[] groups = new int[8];
+		int group = 1;
+		boolean needsRegex = false;
+
+		for (AbstractCommandNode child : children) {
+			KeywordPattern pattern = child.getMetadata().getKeywordPattern();
+			if (overridesMatching(child) || !isMergeable(pattern.getSource())) {
+				return null;
+			}
+			needsRegex |= pattern.getKind() == KeywordPattern.Kind.REGEX;
+
+			if (indices.size() == groups.length) {
+				groups = Arrays.copyOf(groups, groups.length * 2);
+			}
+			groups[indices.size()] = group;
+			indices.put(child, indices.size());
+			// the group around it and the ones in it
+			group += 1 + pattern.toPattern().matcher("").groupCount();
+
+			if (source.length() > 0) {
+				source.append('|');
+			}
+			source.append('(').append(pattern.getSource()).append(')');
+		}
+
+		if (indices.size() < MIN_CHILDREN || !needsRegex) {
+			return null;
+		}
+		try {
+			Pattern merged = Pattern.compile(source.toString(), Pattern.CASE_INSENSITIVE);
+			return new SiblingPatterns(merged, Arrays.copyOf(groups, indices.size()), indices);
+		} catch (PatternSyntaxException e) {
+			// e.g. two children using the same group name
+			return null;
+		}
+	}
+
+	/**
+	 * @param child A child
+	 *
+	 * @return True if the child matches the arguments itself, instead of using its pattern
+	 */
+	static boolean overridesMatching(@Nonnull AbstractCommandNode child) {
+		return OVERRIDES_MATCHING.get(child.getClass());
+	}
+
+	/**
+	 * @param source The source of a pattern
+	 *
+	 * @return False if it contains a numbered back reference, which would point to another group once merged
+	 */
+	private static boolean isMergeable(String source) {
+		for (int i = 0; i < source.length() - 1; i++) {
+			if (source.charAt(i) == '\\') {
+				char next = source.charAt(i + 1);
+				if (next >= '1' && next <= '9') {
+					return false;
+				}
+				// skip the escaped char
+				i++;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the first child matching the argument
+	 *
+	 * @param argument The argument. May be null, if there are no arguments left.
+	 *
+	 * @return The index of the first matching child or -1 if none matches
+	 */
+	int firstMatch(@Nullable String argument) {
+		if (argument == null) {
+			return -1;
+		}
+		Matcher matcher = merged.matcher(argument);
+		if (!matcher.matches()) {
+			return -1;
+		}
+		for (int i = 0; i < groups.length; i++) {
+			if (matcher.start(groups[i]) >= 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param child A child
+	 *
+	 * @return The index of the child or -1 if it was added after this was built
+	 */
+	int indexOf(@Nonnull AbstractCommandNode child) {
+		Integer index = indices.get(child);
+		return index == null ? -1 : index;
+	}
+}
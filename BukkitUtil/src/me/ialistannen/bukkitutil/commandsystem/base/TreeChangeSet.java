@@ -0,0 +1,219 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTree.InvalidationReason;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The net structural changes of one or more published versions of a {@link CommandTree}.
+ * <p>
+ * Adding and removing the same child cancels out, so only the changes that are still visible are left. The sequence
+ * numbers count the delivered change sets of a tree. If {@link #getFirstSequence()} is not one more than the last
+ * sequence a listener has seen, it missed changes (e.g. because it was added later) and has to rebuild from the tree.
+ */
+public class TreeChangeSet {
+
+	private final long firstSequence;
+	private final long lastSequence;
+	private final long treeVersion;
+	private final List<Change> changes;
+
+	/**
+	 * @param firstSequence The sequence of the first merged change set
+	 * @param lastSequence  The sequence of the last merged change set
+	 * @param treeVersion   The version of the tree after the changes
+	 * @param changes       The net changes, in the order they happened
+	 */
+	private TreeChangeSet(long firstSequence, long lastSequence, long treeVersion, List<Change> changes) {
+		this.firstSequence = firstSequence;
+		this.lastSequence = lastSequence;
+		this.treeVersion = treeVersion;
+		this.changes = Collections.unmodifiableList(changes);
+	}
+
+	/**
+	 * Creates a change set, dropping the changes that cancel out
+	 *
+	 * @param sequence    The sequence of this change set
+	 * @param treeVersion The version of the tree after the changes
+	 * @param changes     The changes, in the order they happened
+	 *
+	 * @return The change set
+	 */
+	@Nonnull
+	static TreeChangeSet of(long sequence, long treeVersion, @Nonnull Collection<Change> changes) {
+		return new TreeChangeSet(sequence, sequence, treeVersion, coalesce(changes));
+	}
+
+	/**
+	 * Merges a later change set into this one
+	 *
+	 * @param later The change set following this one
+	 *
+	 * @return A change set with the net changes of both
+	 */
+	@Nonnull
+	TreeChangeSet merge(@Nonnull TreeChangeSet later) {
+		List<Change> all = new ArrayList<>(changes.size() + later.changes.size());
+		all.addAll(changes);
+		all.addAll(later.changes);
+		return new TreeChangeSet(firstSequence, later.lastSequence, later.treeVersion, coalesce(all));
+	}
+
+	/**
+	 * @param changes The changes in the order they happened
+	 *
+	 * @return The changes that didn't cancel out, in order
+	 */
+	private static List<Change> coalesce(Collection<Change> changes) {
+		Map<ChangeKey, Change> net = new LinkedHashMap<>();
+		for (Change change : changes) {
+			ChangeKey key = new ChangeKey(change.parent, change.child);
+			Change previous = net.get(key);
+			if (previous == null) {
+				net.put(key, change);
+			} else if (previous.reason != change.reason) {
+				// added and removed again (or the other way round)
+				net.remove(key);
+			}
+		}
+		return new ArrayList<>(net.values());
+	}
+
+	/**
+	 * @return The sequence of the first change set merged into this one
+	 */
+	public long getFirstSequence() {
+		return firstSequence;
+	}
+
+	/**
+	 * @return The sequence of the last change set merged into this one
+	 */
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * @return The version of the tree after these changes
+	 *
+	 * @see CommandTree#getVersion()
+	 */
+	@SuppressWarnings("unused")
+	public long getTreeVersion() {
+		return treeVersion;
+	}
+
+	/**
+	 * @return The net changes, in the order they happened. Unmodifiable.
+	 */
+	@Nonnull
+	public List<Change> getChanges() {
+		return changes;
+	}
+
+	/**
+	 * @return True if all changes canceled out
+	 */
+	public boolean isEmpty() {
+		return changes.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "TreeChangeSet{" +
+				"sequence=" + firstSequence + (firstSequence == lastSequence ? "" : ".." + lastSequence) +
+				", treeVersion=" + treeVersion +
+				", changes=" + changes +
+				'}';
+	}
+
+	/**
+	 * A single added or removed child
+	 */
+	public static class Change {
+		private final InvalidationReason reason;
+		private final AbstractCommandNode parent;
+		private final AbstractCommandNode child;
+
+		/**
+		 * @param reason Whether the child was added or removed
+		 * @param parent The parent node
+		 * @param child  The child node
+		 */
+		Change(InvalidationReason reason, AbstractCommandNode parent, AbstractCommandNode child) {
+			this.reason = reason;
+			this.parent = parent;
+			this.child = child;
+		}
+
+		/**
+		 * @return Whether the child was added or removed
+		 */
+		@Nonnull
+		public InvalidationReason getReason() {
+			return reason;
+		}
+
+		/**
+		 * @return The parent node
+		 */
+		@Nonnull
+		public AbstractCommandNode getParent() {
+			return parent;
+		}
+
+		/**
+		 * @return The child node
+		 */
+		@Nonnull
+		public AbstractCommandNode getChild() {
+			return child;
+		}
+
+		@Override
+		public String toString() {
+			return reason + " " + child.getBaseKey() + " @ " + parent.getBaseKey();
+		}
+	}
+
+	/**
+	 * A parent and child, compared by identity
+	 */
+	private static class ChangeKey {
+		private final AbstractCommandNode parent;
+		private final AbstractCommandNode child;
+
+		/**
+		 * @param parent The parent node
+		 * @param child  The child node
+		 */
+		ChangeKey(AbstractCommandNode parent, AbstractCommandNode child) {
+			this.parent = parent;
+			this.child = child;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			ChangeKey that = (ChangeKey) o;
+			return parent == that.parent && child == that.child;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(parent) + System.identityHashCode(child);
+		}
+	}
+}
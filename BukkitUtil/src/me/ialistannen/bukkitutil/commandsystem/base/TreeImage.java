@@ -0,0 +1,536 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * The resolved structure of a {@link CommandTree}, saved to a file.
+ * <p>
+ * On the next start {@link #load(Path)} maps and validates the file. The image can then resolve arguments to the
+ * base keys of the nodes before any node exists, and {@link CommandTree#setImage(TreeImage)} hands the saved
+ * keyword, name, usage, description and pattern to the nodes as they are added, so they aren't translated again.
+ * <p>
+ * The nodes are identified by their {@link AbstractCommandNode#getPath() path}, as e.g. every help command has the
+ * same base key. A node only takes the saved information, if its class and path match, no other saved node has the
+ * same path and the image was written in the current locale with the same
+ * {@link me.ialistannen.languageSystem.MessageProvider#getTranslationHash() translations}.
+ * <p>
+ * <b>Format:</b> {@code int magic, short version, short reserved, int nodeCount, int bodyLength, long crc32(body)},
+ * followed by the body: {@code string localeTag, long translationHash}, then per node in breadth first order:
+ * {@code int parentIndex (-1 for children of the root), string className, string baseKey, string keyword,
+ * string name, string usage, string description, string pattern, byte hasPermission, [string permission]}. Strings
+ * are an int byte length followed by the UTF-8 bytes.
+ */
+public class TreeImage {
+
+	private static final int MAGIC = 0x4354494D; // "CTIM"
+	private static final short VERSION = 3;
+	private static final int HEADER_SIZE = 24;
+
+	private final Locale locale;
+	private final long translationHash;
+	private final int[] parents;
+	private final String[] classNames;
+	private final String[] baseKeys;
+	private final String[] keywords;
+	private final String[] names;
+	private final String[] usages;
+	private final String[] descriptions;
+	private final String[] patternSources;
+	private final String[] permissions;
+	private final int[][] children;
+	private final int[] rootChildren;
+	private final String[] paths;
+	private final Map<String, Integer> indexByPath = new HashMap<>();
+	// saved more than once, e.g. by nodes with their own equals
+	private final Set<String> ambiguousPaths = new HashSet<>();
+	private final KeywordPattern[] patterns;
+
+	/**
+	 * @param locale          The locale the image was written in
+	 * @param translationHash The hash of the translations the image was written with
+	 * @param parents         The index of the parent of every node. -1 for the root.
+	 * @param classNames      The class names
+	 * @param baseKeys        The base keys
+	 * @param keywords        The keywords
+	 * @param names           The names
+	 * @param usages          The usages
+	 * @param descriptions    The descriptions
+	 * @param patternSources  The sources of the patterns
+	 * @param permissions     The required permissions. Null entries for complex checks.
+	 */
+	private TreeImage(Locale locale, long translationHash, int[] parents, String[] classNames, String[] baseKeys,
+	                  String[] keywords, String[] names, String[] usages, String[] descriptions,
+	                  String[] patternSources, String[] permissions) {
+		this.locale = locale;
+		this.translationHash = translationHash;
+		this.parents = parents;
+		this.classNames = classNames;
+		this.baseKeys = baseKeys;
+		this.keywords = keywords;
+		this.names = names;
+		this.usages = usages;
+		this.descriptions = descriptions;
+		this.patternSources = patternSources;
+		this.permissions = permissions;
+		this.patterns = new KeywordPattern[parents.length];
+		this.paths = new String[parents.length];
+
+		List<List<Integer>> childLists = new ArrayList<>();
+		List<Integer> rootChildList = new ArrayList<>();
+		for (int i = 0; i < parents.length; i++) {
+			childLists.add(new ArrayList<>());
+			// parents come before their children
+			paths[i] = parents[i] < 0 ? baseKeys[i] : paths[parents[i]] + "/" + baseKeys[i];
+			if (indexByPath.putIfAbsent(paths[i], i) != null) {
+				ambiguousPaths.add(paths[i]);
+			}
+		}
+		for (int i = 0; i < parents.length; i++) {
+			(parents[i] < 0 ? rootChildList : childLists.get(parents[i])).add(i);
+		}
+
+		this.children = new int[parents.length][];
+		for (int i = 0; i < parents.length; i++) {
+			children[i] = toArray(childLists.get(i));
+		}
+		this.rootChildren = toArray(rootChildList);
+	}
+
+	/**
+	 * Writes the current structure of the tree. Resolves the information of all nodes in the current locale.
+	 * <p>
+	 * The file is written to a temporary file first and then moved, so a crash never leaves a half written image.
+	 *
+	 * @param tree            The tree to write
+	 * @param locale          The current locale of the language
+	 * @param translationHash The {@link me.ialistannen.languageSystem.MessageProvider#getTranslationHash() hash} of
+	 *                        the current translations
+	 * @param file            The file to write to
+	 *
+	 * @throws IOException if writing fails
+	 */
+	public static void write(@Nonnull CommandTree tree, @Nonnull Locale locale, long translationHash,
+	                         @Nonnull Path file) throws IOException {
+		List<AbstractCommandNode> nodes = new ArrayList<>();
+		List<Integer> parents = new ArrayList<>();
+
+		Queue<AbstractCommandNode> queue = new ArrayDeque<>();
+		Queue<Integer> parentQueue = new ArrayDeque<>();
+		for (AbstractCommandNode child : tree.getRoot().getChildren()) {
+			queue.add(child);
+			parentQueue.add(-1);
+		}
+		while (!queue.isEmpty()) {
+			AbstractCommandNode node = queue.poll();
+			int index = nodes.size();
+			nodes.add(node);
+			parents.add(parentQueue.poll());
+			for (AbstractCommandNode child : node.getChildren()) {
+				queue.add(child);
+				parentQueue.add(index);
+			}
+		}
+
+		ByteBuffer body = ByteBuffer.allocate(1024);
+		body = putString(body, locale.toLanguageTag());
+		body = ensure(body, 8);
+		body.putLong(translationHash);
+		for (int i = 0; i < nodes.size(); i++) {
+			AbstractCommandNode node = nodes.get(i);
+			NodeMetadata metadata = node.getMetadata();
+
+			body = ensure(body, 5);
+			body.putInt(parents.get(i));
+			body = putString(body, node.getClass().getName());
+			body = putString(body, node.getBaseKey());
+			body = putString(body, metadata.getKeyword());
+			body = putString(body, metadata.getName());
+			body = putString(body, metadata.getUsage());
+			body = putString(body, metadata.getDescription());
+			body = putString(body, metadata.getKeywordPattern().getSource());
+			String permission = node.getRequiredPermission();
+			body = ensure(body, 1);
+			body.put((byte) (permission == null ? 0 : 1));
+			if (permission != null) {
+				body = putString(body, permission);
+			}
+		}
+		body.flip();
+
+		CRC32 crc = new CRC32();
+		crc.update(body.duplicate());
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.putShort(VERSION);
+		header.putShort((short) 0);
+		header.putInt(nodes.size());
+		header.putInt(body.remaining());
+		header.putLong(crc.getValue());
+		header.flip();
+
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			while (body.hasRemaining()) {
+				channel.write(body);
+			}
+			channel.force(true);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Maps and validates an image
+	 *
+	 * @param file The file to load
+	 *
+	 * @return The image or an empty optional if there is no file or it is invalid (wrong version, corrupt)
+	 *
+	 * @throws IOException if the file exists, but can't be read
+	 */
+	@Nonnull
+	public static Optional<TreeImage> load(@Nonnull Path file) throws IOException {
+		if (!Files.isRegularFile(file)) {
+			return Optional.empty();
+		}
+		long size = Files.size(file);
+		if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+			return Optional.empty();
+		}
+		// read, not mapped: a mapping would keep the file locked on Windows until it is collected
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+
+		if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+			return Optional.empty();
+		}
+		buffer.getShort();
+		int nodeCount = buffer.getInt();
+		int bodyLength = buffer.getInt();
+		long checksum = buffer.getLong();
+		if (nodeCount < 0 || bodyLength != buffer.remaining()) {
+			return Optional.empty();
+		}
+
+		ByteBuffer body = buffer.slice();
+		CRC32 crc = new CRC32();
+		crc.update(body.duplicate());
+		if (crc.getValue() != checksum) {
+			return Optional.empty();
+		}
+
+		try {
+			return Optional.of(decode(body, nodeCount));
+		} catch (RuntimeException e) {
+			// checksum was fine, but the content is not. Written by a broken version?
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * @param body      The validated body
+	 * @param nodeCount The amount of nodes
+	 *
+	 * @return The decoded image
+	 */
+	private static TreeImage decode(ByteBuffer body, int nodeCount) {
+		Locale locale = Locale.forLanguageTag(getString(body));
+		long translationHash = body.getLong();
+		int[] parents = new int[nodeCount];
+		String[] classNames = new String[nodeCount];
+		String[] baseKeys = new String[nodeCount];
+		String[] keywords = new String[nodeCount];
+		String[] names = new String[nodeCount];
+		String[] usages = new String[nodeCount];
+		String[] descriptions = new String[nodeCount];
+		String[] patternSources = new String[nodeCount];
+		String[] permissions = new String[nodeCount];
+
+		for (int i = 0; i < nodeCount; i++) {
+			parents[i] = body.getInt();
+			if (parents[i] < -1 || parents[i] >= i) {
+				throw new IllegalStateException("Parent must come before its children");
+			}
+			classNames[i] = getString(body);
+			baseKeys[i] = getString(body);
+			keywords[i] = getString(body);
+			names[i] = getString(body);
+			usages[i] = getString(body);
+			descriptions[i] = getString(body);
+			patternSources[i] = getString(body);
+			permissions[i] = body.get() == 0 ? null : getString(body);
+		}
+		if (body.hasRemaining()) {
+			throw new IllegalStateException("Trailing data");
+		}
+
+		return new TreeImage(locale, translationHash, parents, classNames, baseKeys, keywords, names, usages,
+				descriptions, patternSources, permissions);
+	}
+
+	/**
+	 * Returns the locale the image was written in
+	 *
+	 * @return The locale of the saved information
+	 */
+	@Nonnull
+	public Locale getLocale() {
+		return locale;
+	}
+
+	/**
+	 * Returns the hash of the translations the image was written with
+	 *
+	 * @return The {@link me.ialistannen.languageSystem.MessageProvider#getTranslationHash() translation hash}
+	 */
+	public long getTranslationHash() {
+		return translationHash;
+	}
+
+	/**
+	 * Returns the amount of nodes in the image
+	 *
+	 * @return The amount of nodes, without the root
+	 */
+	public int getNodeCount() {
+		return parents.length;
+	}
+
+	/**
+	 * Returns the keywords of the children of the root
+	 *
+	 * @return The top level keywords
+	 */
+	@Nonnull
+	public List<String> getTopLevelKeywords() {
+		List<String> list = new ArrayList<>(rootChildren.length);
+		for (int child : rootChildren) {
+			list.add(keywords[child]);
+		}
+		return list;
+	}
+
+	/**
+	 * Resolves the arguments to the deepest matching node, like
+	 * {@link CommandTree#find(Queue, org.bukkit.command.CommandSender)} would, but without any node or access check.
+	 *
+	 * @param args The arguments
+	 *
+	 * @return The base keys of the matched nodes, from the top level node down. Empty if nothing matched. Joined with
+	 * a '/' they are the path of the deepest one.
+	 */
+	@Nonnull
+	public List<String> resolve(@Nonnull String[] args) {
+		List<String> path = new ArrayList<>();
+		int[] candidates = rootChildren;
+		for (String arg : args) {
+			int matched = -1;
+			for (int candidate : candidates) {
+				if (patternOf(candidate).matches(arg)) {
+					matched = candidate;
+					break;
+				}
+			}
+			if (matched < 0) {
+				break;
+			}
+			path.add(baseKeys[matched]);
+			candidates = children[matched];
+		}
+		return path;
+	}
+
+	/**
+	 * Returns the saved permission of a node
+	 *
+	 * @param path The {@link AbstractCommandNode#getPath() path} of the node
+	 *
+	 * @return The required permission. Empty if the node is unknown, not unique or has a more complex check.
+	 */
+	@Nonnull
+	public Optional<String> getRequiredPermission(@Nonnull String path) {
+		int index = indexOf(path);
+		return index < 0 ? Optional.empty() : Optional.ofNullable(permissions[index]);
+	}
+
+	/**
+	 * Returns the saved information of a node, if it matches the node and the locale
+	 *
+	 * @param node   The node
+	 * @param path   The path of the node
+	 * @param locale The current locale
+	 *
+	 * @return The saved information
+	 */
+	@Nonnull
+	private Optional<NodeMetadata> metadataFor(AbstractCommandNode node, String path, Locale locale) {
+		if (!this.locale.equals(locale)) {
+			return Optional.empty();
+		}
+		int index = indexOf(path);
+		if (index < 0 || !classNames[index].equals(node.getClass().getName())) {
+			return Optional.empty();
+		}
+		return Optional.of(new NodeMetadata(locale, keywords[index], names[index], usages[index], descriptions[index],
+				patternOf(index)));
+	}
+
+	/**
+	 * Hands the saved information to the node and all its children
+	 *
+	 * @param node   The node that is added
+	 * @param path   The path the node will have
+	 * @param locale The current locale
+	 */
+	void seed(@Nonnull AbstractCommandNode node, @Nonnull String path, @Nonnull Locale locale) {
+		metadataFor(node, path, locale).ifPresent(node::seedMetadata);
+		for (AbstractCommandNode child : node.getChildren()) {
+			seed(child, path + "/" + child.getBaseKey(), locale);
+		}
+	}
+
+	/**
+	 * @param path The path of the node
+	 *
+	 * @return The index of the node or -1 if it is unknown or the path was saved more than once
+	 */
+	private int indexOf(String path) {
+		Integer index = indexByPath.get(path);
+		return index == null || ambiguousPaths.contains(path) ? -1 : index;
+	}
+
+	/**
+	 * @param index The index of the node
+	 *
+	 * @return The analysed pattern of the node
+	 */
+	private KeywordPattern patternOf(int index) {
+		KeywordPattern pattern = patterns[index];
+		if (pattern == null) {
+			pattern = KeywordPattern.compile(patternSources[index]);
+			patterns[index] = pattern;
+		}
+		return pattern;
+	}
+
+	/**
+	 * @param list The list
+	 *
+	 * @return The list as an array
+	 */
+	private static int[] toArray(List<Integer> list) {
+		return list.isEmpty() ? new int[0] : list.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * @param buffer The buffer
+	 * @param needed The bytes needed
+	 *
+	 * @return The buffer or a bigger copy
+	 */
+	private static ByteBuffer ensure(ByteBuffer buffer, int needed) {
+		if (buffer.remaining() >= needed) {
+			return buffer;
+		}
+		ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+		buffer.flip();
+		bigger.put(buffer);
+		return bigger;
+	}
+
+	/**
+	 * @param buffer The buffer
+	 * @param string The string to write
+	 *
+	 * @return The buffer or a bigger copy
+	 */
+	private static ByteBuffer putString(ByteBuffer buffer, String string) {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer target = ensure(buffer, 4 + bytes.length);
+		target.putInt(bytes.length);
+		target.put(bytes);
+		return target;
+	}
+
+	/**
+	 * @param buffer The buffer
+	 *
+	 * @return The read string
+	 */
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IllegalStateException("Invalid string length " + length);
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return The base keys of all nodes. Unmodifiable.
+	 */
+	@SuppressWarnings("unused")
+	@Nonnull
+	public List<String> getBaseKeys() {
+		return Collections.unmodifiableList(Arrays.asList(baseKeys));
+	}
+
+	/**
+	 * @return The paths of all nodes. Unmodifiable.
+	 */
+	@SuppressWarnings("unused")
+	@Nonnull
+	public List<String> getPaths() {
+		return Collections.unmodifiableList(Arrays.asList(paths));
+	}
+
+	/**
+	 * @param path The path of the node
+	 *
+	 * @return The path of its parent. Empty for top level, unknown or not unique nodes.
+	 */
+	@SuppressWarnings("unused")
+	@Nonnull
+	public Optional<String> getParent(@Nullable String path) {
+		int index = path == null ? -1 : indexOf(path);
+		if (index < 0 || parents[index] < 0) {
+			return Optional.empty();
+		}
+		return Optional.of(paths[parents[index]]);
+	}
+
+	@Override
+	public String toString() {
+		return "TreeImage{" +
+				"locale=" + locale +
+				", nodes=" + parents.length +
+				", topLevel=" + getTopLevelKeywords() +
+				'}';
+	}
+}
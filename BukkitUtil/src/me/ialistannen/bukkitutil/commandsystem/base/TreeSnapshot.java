@@ -0,0 +1,154 @@
+package me.ialistannen.bukkitutil.commandsystem.base;
+
+import org.bukkit.command.CommandSender;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A pinned version of the structure of a {@link CommandTree}.
+ * <p>
+ * The children of every node are seen as they were when the snapshot was taken, even if the tree is changed in the
+ * meantime. Unchanged parts are shared between all versions, so a snapshot is cheap.
+ * <p>
+ * Close it once you are done, so the tree can forget the old versions.
+ */
+public class TreeSnapshot implements AutoCloseable {
+
+	private final CommandTree tree;
+	private final long version;
+	private boolean closed;
+
+	/**
+	 * @param tree    The tree it belongs to
+	 * @param version The pinned version
+	 */
+	TreeSnapshot(@Nonnull CommandTree tree, long version) {
+		this.tree = tree;
+		this.version = version;
+	}
+
+	/**
+	 * Returns the version of the tree this snapshot sees
+	 *
+	 * @return The pinned version
+	 */
+	@SuppressWarnings("unused")
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the direct children of the node, as they were in this version
+	 *
+	 * @param node The node to get the children for
+	 *
+	 * @return The direct children, in an unmodifiable collection
+	 */
+	@Nonnull
+	public Collection<AbstractCommandNode> getChildren(@Nonnull AbstractCommandNode node) {
+		ChildrenVersion head = node.getChildrenVersions();
+		if (head == null) {
+			// never changed through the tree
+			return node.getChildren();
+		}
+		ChildrenVersion visible = head.visibleIn(version);
+		if (visible == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(Arrays.asList(visible.getChildren()));
+	}
+
+	/**
+	 * @param node The node
+	 *
+	 * @return True if this version sees the newest children of the node
+	 */
+	private boolean seesNewestChildren(AbstractCommandNode node) {
+		ChildrenVersion head = node.getChildrenVersions();
+		return head == null || head.visibleIn(version) == head;
+	}
+
+	/**
+	 * Wraps a context, so that it sees the children of this version
+	 *
+	 * @param context The context to wrap
+	 *
+	 * @return A context using this snapshot for the children
+	 */
+	@Nonnull
+	ResolutionContext wrap(@Nonnull ResolutionContext context) {
+		return new PinnedContext(context);
+	}
+
+	/**
+	 * Releases the version. Calling it more than once does nothing.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		tree.release(version);
+	}
+
+	/**
+	 * Asks the wrapped context, but uses the children of the snapshot
+	 */
+	private class PinnedContext extends ResolutionContext {
+
+		private final ResolutionContext delegate;
+
+		/**
+		 * @param delegate The context to ask for the checks
+		 */
+		PinnedContext(ResolutionContext delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		boolean matches(@Nonnull AbstractCommandNode node, @Nullable String argument) {
+			return delegate.matches(node, argument);
+		}
+
+		@Override
+		SiblingPatterns getChildPatterns(@Nonnull AbstractCommandNode node) {
+			// children missing in the pinned version are never asked, newer ones are checked one by one
+			return delegate.getChildPatterns(node);
+		}
+
+		@Nonnull
+		@Override
+		CommandResultType checkAccess(@Nonnull AbstractCommandNode node, @Nonnull CommandSender sender) {
+			return delegate.checkAccess(node, sender);
+		}
+
+		@Nonnull
+		@Override
+		List<String> getUsableKeywords(@Nonnull AbstractCommandNode node, @Nonnull CommandSender sender) {
+			if (seesNewestChildren(node)) {
+				// the wrapped context may know them already, e.g. a projected view
+				return delegate.getUsableKeywords(node, sender);
+			}
+			List<String> keywords = new ArrayList<>();
+			for (AbstractCommandNode child : getChildren(node)) {
+				if (checkAccess(child, sender) == CommandResultType.SUCCESSFUL) {
+					keywords.add(child.getKeyword());
+				}
+			}
+			return keywords;
+		}
+
+		@Nonnull
+		@Override
+		Collection<AbstractCommandNode> getChildren(@Nonnull AbstractCommandNode node) {
+			return TreeSnapshot.this.getChildren(node);
+		}
+	}
+}
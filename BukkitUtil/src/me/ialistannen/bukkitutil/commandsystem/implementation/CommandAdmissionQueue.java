@@ -0,0 +1,372 @@
+package me.ialistannen.bukkitutil.commandsystem.implementation;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * An admission queue for commands, limiting the time spent executing them per tick.
+ * <p>
+ * Commands are executed right away, as long as the budget of the current tick isn't used up and nothing is waiting.
+ * Otherwise they are queued and executed in a later tick, higher {@link Priority priorities} first. A command that
+ * waited longer than the {@link #setMaxPriorityWait(long, TimeUnit) maximum priority wait} is executed before all
+ * others though, so constant load with a high priority can't starve the lower ones.
+ * <p>
+ * {@link #start(Plugin)} must be called, as the budget is only reset by {@link #tick()}.
+ * <p>
+ * <b>Not thread safe.</b> Only use it from the main thread.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CommandAdmissionQueue {
+
+	private final long tickBudgetNanos;
+	private final Function<CommandSender, Priority> classifier;
+
+	private final Map<Priority, Queue<Entry>> queues = new EnumMap<>(Priority.class);
+
+	private long maxPriorityWaitNanos = TimeUnit.SECONDS.toNanos(1);
+
+	private long usedThisTick;
+
+	private long admittedImmediately;
+	private long deferred;
+	private long executedDeferred;
+	private long dropped;
+	private long totalWaitNanos;
+	private long maxWaitNanos;
+	private int maxDepth;
+
+	/**
+	 * @param tickBudget The time commands may use per tick
+	 * @param unit       The unit of the tick budget
+	 * @param classifier Assigns a priority to a sender
+	 */
+	public CommandAdmissionQueue(long tickBudget, @Nonnull TimeUnit unit,
+	                             @Nonnull Function<CommandSender, Priority> classifier) {
+		this.tickBudgetNanos = unit.toNanos(tickBudget);
+		this.classifier = classifier;
+
+		for (Priority priority : Priority.values()) {
+			queues.put(priority, new ArrayDeque<>());
+		}
+	}
+
+	/**
+	 * Players with the staff permission get {@link Priority#STAFF}, other players {@link Priority#PLAYER} and
+	 * everything else (console, blocks) {@link Priority#CONSOLE}.
+	 *
+	 * @param tickBudget      The time commands may use per tick
+	 * @param unit            The unit of the tick budget
+	 * @param staffPermission The permission staff members have
+	 *
+	 * @see #CommandAdmissionQueue(long, TimeUnit, Function)
+	 */
+	@SuppressWarnings("unused")
+	public CommandAdmissionQueue(long tickBudget, @Nonnull TimeUnit unit, @Nonnull String staffPermission) {
+		this(tickBudget, unit, sender -> {
+			if (!(sender instanceof Player)) {
+				return Priority.CONSOLE;
+			}
+			return sender.hasPermission(staffPermission) ? Priority.STAFF : Priority.PLAYER;
+		});
+	}
+
+	/**
+	 * Executes the command now, if the budget allows it, or queues it.
+	 *
+	 * @param sender  The sender of the command
+	 * @param command The action executing the command
+	 */
+	public void submit(@Nonnull CommandSender sender, @Nonnull Runnable command) {
+		Priority priority = classifier.apply(sender);
+
+		if (getDepth() == 0 && usedThisTick < tickBudgetNanos) {
+			admittedImmediately++;
+			run(command);
+			return;
+		}
+
+		queues.get(priority).add(new Entry(sender, command, System.nanoTime()));
+		deferred++;
+		maxDepth = Math.max(maxDepth, getDepth());
+	}
+
+	/**
+	 * Sets how long a command may wait before it is executed ahead of commands with a higher priority
+	 *
+	 * @param maxPriorityWait The maximum time. One second by default.
+	 * @param unit            The unit of the time
+	 */
+	@SuppressWarnings("unused")
+	public void setMaxPriorityWait(long maxPriorityWait, @Nonnull TimeUnit unit) {
+		this.maxPriorityWaitNanos = unit.toNanos(maxPriorityWait);
+	}
+
+	/**
+	 * Starts a new tick and executes waiting commands, as long as the budget allows it.
+	 * <p>
+	 * At least one command is executed per tick, so the queue always drains.
+	 */
+	public void tick() {
+		usedThisTick = 0;
+		boolean executedOne = false;
+
+		while (getDepth() > 0) {
+			if (executedOne && usedThisTick >= tickBudgetNanos) {
+				return;
+			}
+			long now = System.nanoTime();
+			Entry entry = pollNext(now);
+
+			long waited = now - entry.queuedAt;
+			totalWaitNanos += waited;
+			maxWaitNanos = Math.max(maxWaitNanos, waited);
+
+			if (entry.sender instanceof Player && !((Player) entry.sender).isOnline()) {
+				dropped++;
+				continue;
+			}
+
+			executedDeferred++;
+			executedOne = true;
+			run(entry.command);
+		}
+	}
+
+	/**
+	 * Takes the next command. That is the one waiting the longest, if it waited longer than the maximum priority
+	 * wait, or the first one with the highest priority.
+	 *
+	 * @param now The current {@link System#nanoTime()}
+	 *
+	 * @return The next command. Null if none is waiting.
+	 */
+	private Entry pollNext(long now) {
+		Queue<Entry> highest = null;
+		Queue<Entry> overdue = null;
+
+		for (Priority priority : Priority.values()) {
+			Queue<Entry> queue = queues.get(priority);
+			Entry head = queue.peek();
+			if (head == null) {
+				continue;
+			}
+			if (highest == null) {
+				highest = queue;
+			}
+			// the heads are the oldest entries of their queue
+			boolean waitedTooLong = now - head.queuedAt >= maxPriorityWaitNanos;
+			if (waitedTooLong && (overdue == null || head.queuedAt < overdue.element().queuedAt)) {
+				overdue = queue;
+			}
+		}
+
+		if (overdue != null) {
+			return overdue.poll();
+		}
+		return highest == null ? null : highest.poll();
+	}
+
+	/**
+	 * Calls {@link #tick()} every tick
+	 *
+	 * @param plugin The plugin to schedule the task for
+	 *
+	 * @return The started task. Cancel it to stop the queue.
+	 */
+	@Nonnull
+	public BukkitTask start(@Nonnull Plugin plugin) {
+		return plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+	}
+
+	/**
+	 * Returns the amount of waiting commands
+	 *
+	 * @return The amount of commands waiting in all priorities
+	 */
+	public int getDepth() {
+		int depth = 0;
+		for (Queue<Entry> queue : queues.values()) {
+			depth += queue.size();
+		}
+		return depth;
+	}
+
+	/**
+	 * Returns the amount of waiting commands with the given priority
+	 *
+	 * @param priority The priority
+	 *
+	 * @return The amount of commands waiting with this priority
+	 */
+	public int getDepth(@Nonnull Priority priority) {
+		return queues.get(priority).size();
+	}
+
+	/**
+	 * Returns the current statistics
+	 *
+	 * @return A snapshot of the statistics
+	 */
+	@Nonnull
+	public Statistics getStatistics() {
+		long waitedEntries = executedDeferred + dropped;
+		return new Statistics(getDepth(), maxDepth, admittedImmediately, deferred, dropped,
+				waitedEntries == 0 ? 0 : totalWaitNanos / waitedEntries, maxWaitNanos);
+	}
+
+	/**
+	 * @param command The command to run and count against the budget
+	 */
+	private void run(Runnable command) {
+		long start = System.nanoTime();
+		try {
+			command.run();
+		} finally {
+			usedThisTick += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * The priority of a command. Commands with a higher priority (lower ordinal) are executed first, unless another one
+	 * waited too long.
+	 */
+	public enum Priority {
+		/**
+		 * The console and other non-player senders
+		 */
+		CONSOLE,
+		/**
+		 * Staff members
+		 */
+		STAFF,
+		/**
+		 * Normal players
+		 */
+		PLAYER
+	}
+
+	/**
+	 * A waiting command
+	 */
+	private static class Entry {
+		private final CommandSender sender;
+		private final Runnable command;
+		private final long queuedAt;
+
+		/**
+		 * @param sender   The sender of the command
+		 * @param command  The action executing the command
+		 * @param queuedAt The {@link System#nanoTime()} it was queued at
+		 */
+		Entry(CommandSender sender, Runnable command, long queuedAt) {
+			this.sender = sender;
+			this.command = command;
+			this.queuedAt = queuedAt;
+		}
+	}
+
+	/**
+	 * A snapshot of the statistics of the queue
+	 */
+	public static class Statistics {
+		private final int depth;
+		private final int maxDepth;
+		private final long admittedImmediately;
+		private final long deferred;
+		private final long dropped;
+		private final long averageWaitNanos;
+		private final long maxWaitNanos;
+
+		/**
+		 * @param depth               The amount of waiting commands
+		 * @param maxDepth            The maximum amount of waiting commands so far
+		 * @param admittedImmediately The amount of commands executed right away
+		 * @param deferred            The amount of commands that had to wait
+		 * @param dropped             The amount of waiting commands whose sender went offline
+		 * @param averageWaitNanos    The average time a command waited
+		 * @param maxWaitNanos        The maximum time a command waited
+		 */
+		private Statistics(int depth, int maxDepth, long admittedImmediately, long deferred, long dropped,
+		                   long averageWaitNanos, long maxWaitNanos) {
+			this.depth = depth;
+			this.maxDepth = maxDepth;
+			this.admittedImmediately = admittedImmediately;
+			this.deferred = deferred;
+			this.dropped = dropped;
+			this.averageWaitNanos = averageWaitNanos;
+			this.maxWaitNanos = maxWaitNanos;
+		}
+
+		/**
+		 * @return The amount of waiting commands
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		/**
+		 * @return The maximum amount of waiting commands so far
+		 */
+		public int getMaxDepth() {
+			return maxDepth;
+		}
+
+		/**
+		 * @return The amount of commands executed right away
+		 */
+		public long getAdmittedImmediately() {
+			return admittedImmediately;
+		}
+
+		/**
+		 * @return The amount of commands that had to wait
+		 */
+		public long getDeferred() {
+			return deferred;
+		}
+
+		/**
+		 * @return The amount of waiting commands whose sender went offline
+		 */
+		public long getDropped() {
+			return dropped;
+		}
+
+		/**
+		 * @return The average time a command waited, in nanoseconds
+		 */
+		public long getAverageWaitNanos() {
+			return averageWaitNanos;
+		}
+
+		/**
+		 * @return The maximum time a command waited, in nanoseconds
+		 */
+		public long getMaxWaitNanos() {
+			return maxWaitNanos;
+		}
+
+		@Override
+		public String toString() {
+			return "Statistics{" +
+					"depth=" + depth +
+					", maxDepth=" + maxDepth +
+					", admittedImmediately=" + admittedImmediately +
+					", deferred=" + deferred +
+					", dropped=" + dropped +
+					", averageWaitNanos=" + averageWaitNanos +
+					", maxWaitNanos=" + maxWaitNanos +
+					'}';
+		}
+	}
+}
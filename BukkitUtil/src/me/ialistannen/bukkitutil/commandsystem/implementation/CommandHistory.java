@@ -0,0 +1,607 @@
+package me.ialistannen.bukkitutil.commandsystem.implementation;
+
+import me.ialistannen.bukkitutil.commandsystem.base.AbstractCommandNode;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandResultType;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * A compact command history per player.
+ * <p>
+ * Every player has a fixed size ring of entries. An entry only holds the index of the node's path, the time, the
+ * result and the arguments packed into a single interned String. Players who didn't execute a command for a while are
+ * written to the spill directory by {@link #spillIdle()} and read back when they are needed again.
+ * <p>
+ * All methods are thread safe, so {@link #spillIdle()} can be called from an asynchronous task. The spill files are
+ * only read and written outside of the lock {@link #record(UUID, AbstractCommandNode, String[], CommandResultType)}
+ * needs.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CommandHistory {
+
+	private static final int FILE_VERSION = 2;
+	private static final char ARGUMENT_SEPARATOR = '\u0000';
+	private static final Pattern SPLIT_ARGUMENTS = Pattern.compile(Pattern.quote(String.valueOf(ARGUMENT_SEPARATOR)));
+	private static final int MAX_INTERNED = 4096;
+	private static final CommandResultType[] RESULTS = CommandResultType.values();
+
+	private final Path spillDirectory;
+	private final int entriesPerPlayer;
+	private final long idleMillis;
+	private final Logger logger;
+
+	private final Map<UUID, PlayerHistory> histories = new HashMap<>();
+	// removed from memory by this instance, so they need to be read again
+	private final Set<UUID> spilledPlayers = new HashSet<>();
+	// only one spill at a time, so they don't delete each other's files
+	private final Object spillLock = new Object();
+
+	private final Map<String, Integer> pathIndices = new HashMap<>();
+	private final List<String> paths = new ArrayList<>();
+	private final Map<String, String> internedArguments = new HashMap<>();
+
+	/**
+	 * @param spillDirectory   The directory to write idle players to. Created if needed.
+	 * @param entriesPerPlayer The amount of entries kept per player
+	 * @param idleTime         The time after which a player counts as idle
+	 * @param unit             The unit of the idle time
+	 * @param logger           The logger to report IO errors to
+	 *
+	 * @throws IOException if the directory couldn't be created
+	 */
+	public CommandHistory(@Nonnull Path spillDirectory, int entriesPerPlayer, long idleTime, @Nonnull TimeUnit unit,
+	                      @Nonnull Logger logger) throws IOException {
+		if (entriesPerPlayer < 1) {
+			throw new IllegalArgumentException("entriesPerPlayer must be at least 1");
+		}
+		this.spillDirectory = spillDirectory;
+		this.entriesPerPlayer = entriesPerPlayer;
+		this.idleMillis = unit.toMillis(idleTime);
+		this.logger = logger;
+
+		Files.createDirectories(spillDirectory);
+	}
+
+	/**
+	 * Records a command
+	 *
+	 * @param player The UUID of the player
+	 * @param node   The node that handled the command
+	 * @param args   The arguments the tree was called with
+	 * @param result The result of the command
+	 */
+	public void record(@Nonnull UUID player, @Nonnull AbstractCommandNode node, @Nonnull String[] args,
+	                   @Nonnull CommandResultType result) {
+		withHistory(player, true, history -> {
+			history.add(indexOf(node.getPath()), System.currentTimeMillis(), (byte) result.ordinal(), pack(args));
+			return null;
+		});
+	}
+
+	/**
+	 * Returns the most recent entries of a player
+	 *
+	 * @param player The UUID of the player
+	 * @param limit  The maximum amount of entries
+	 *
+	 * @return The entries, newest first
+	 */
+	@Nonnull
+	public List<HistoryEntry> getRecent(@Nonnull UUID player, int limit) {
+		return withHistory(player, false, history -> {
+			if (history == null) {
+				return Collections.<HistoryEntry>emptyList();
+			}
+			return getRecent(history, limit);
+		});
+	}
+
+	/**
+	 * @param history The history of a player
+	 * @param limit   The maximum amount of entries
+	 *
+	 * @return The entries, newest first
+	 */
+	private List<HistoryEntry> getRecent(PlayerHistory history, int limit) {
+		int amount = Math.min(limit, history.size);
+		List<HistoryEntry> entries = new ArrayList<>(amount);
+		for (int i = 0; i < amount; i++) {
+			int slot = history.slotFromNewest(i);
+			entries.add(new HistoryEntry(
+					paths.get(history.nodes[slot]),
+					history.times[slot],
+					RESULTS[history.results[slot]],
+					unpack(history.arguments[slot])
+			));
+		}
+		return entries;
+	}
+
+	/**
+	 * Returns the newest entry of a player, skipping the ones with the given path
+	 *
+	 * @param player   The UUID of the player
+	 * @param skipPath The path to skip. Null to skip nothing.
+	 *
+	 * @return The newest matching entry, if any
+	 */
+	@Nonnull
+	public Optional<HistoryEntry> getLast(@Nonnull UUID player, @Nullable String skipPath) {
+		for (HistoryEntry entry : getRecent(player, entriesPerPlayer)) {
+			if (!entry.getPath().equals(skipPath)) {
+				return Optional.of(entry);
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Writes all idle players to the spill directory and removes them from memory
+	 */
+	public void spillIdle() {
+		spill(System.currentTimeMillis() - idleMillis);
+	}
+
+	/**
+	 * Writes all players to the spill directory. Call it when shutting down.
+	 */
+	public void spillAll() {
+		spill(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Writes the idle players without holding the lock and only removes the ones that stayed idle meanwhile
+	 *
+	 * @param idleBefore Players whose last command is older are spilled
+	 */
+	private void spill(long idleBefore) {
+		synchronized (spillLock) {
+			Map<UUID, Snapshot> toWrite = new HashMap<>();
+			synchronized (this) {
+				for (Map.Entry<UUID, PlayerHistory> entry : histories.entrySet()) {
+					PlayerHistory history = entry.getValue();
+					if (history.lastUsed < idleBefore) {
+						toWrite.put(entry.getKey(), new Snapshot(history, toSpilledEntries(history)));
+					}
+				}
+			}
+
+			List<UUID> written = new ArrayList<>();
+			for (Map.Entry<UUID, Snapshot> entry : toWrite.entrySet()) {
+				if (write(entry.getKey(), entry.getValue().entries)) {
+					written.add(entry.getKey());
+				}
+			}
+
+			List<UUID> stale = new ArrayList<>();
+			synchronized (this) {
+				for (UUID player : written) {
+					Snapshot snapshot = toWrite.get(player);
+					// a command recorded while writing keeps him in memory
+					if (histories.get(player) == snapshot.history && snapshot.history.modCount == snapshot.modCount) {
+						histories.remove(player);
+						spilledPlayers.add(player);
+					} else {
+						stale.add(player);
+					}
+				}
+			}
+
+			for (UUID player : stale) {
+				delete(player);
+			}
+		}
+	}
+
+	/**
+	 * Runs the action with the history of a player while holding the lock. His spill file is read before taking it.
+	 *
+	 * @param player The UUID of the player
+	 * @param create Whether to create the history, if he has none
+	 * @param action The action to run. Gets null if he has no history and none was created.
+	 * @param <T>    The type of the result
+	 *
+	 * @return The result of the action
+	 */
+	private <T> T withHistory(UUID player, boolean create, Function<PlayerHistory, T> action) {
+		for (int attempt = 0; ; attempt++) {
+			List<SpilledEntry> spilled = readUnlessLoaded(player);
+			synchronized (this) {
+				PlayerHistory history = adopt(player, spilled);
+				// spilled after we looked, so read the file once more
+				if (history == null && attempt == 0 && spilledPlayers.contains(player)) {
+					continue;
+				}
+				if (history == null && create) {
+					history = new PlayerHistory(entriesPerPlayer);
+					histories.put(player, history);
+					spilledPlayers.remove(player);
+				}
+				return action.apply(history);
+			}
+		}
+	}
+
+	/**
+	 * Reads the spilled history of a player, if he has none in memory
+	 *
+	 * @param player The UUID of the player
+	 *
+	 * @return The spilled entries or null if he has none or is already in memory
+	 */
+	private List<SpilledEntry> readUnlessLoaded(UUID player) {
+		synchronized (this) {
+			if (histories.containsKey(player)) {
+				return null;
+			}
+		}
+		return read(player);
+	}
+
+	/**
+	 * Puts the spilled entries of a player in his history. Must hold the lock.
+	 *
+	 * @param player  The UUID of the player
+	 * @param spilled The entries read from his spill file. Null if there were none.
+	 *
+	 * @return The history of the player or null if he has none
+	 */
+	private PlayerHistory adopt(UUID player, List<SpilledEntry> spilled) {
+		PlayerHistory current = histories.get(player);
+		if (spilled == null) {
+			return current;
+		}
+
+		PlayerHistory history = new PlayerHistory(entriesPerPlayer);
+		for (SpilledEntry entry : spilled) {
+			history.add(indexOf(entry.path), entry.time, entry.result, entry.arguments);
+		}
+		if (current != null) {
+			// another thread created it while the file was read, the spilled entries are older
+			for (int i = current.size - 1; i >= 0; i--) {
+				int slot = current.slotFromNewest(i);
+				history.add(current.nodes[slot], current.times[slot], current.results[slot], current.arguments[slot]);
+			}
+		}
+		history.lastUsed = Math.max(history.lastUsed, System.currentTimeMillis());
+		histories.put(player, history);
+		spilledPlayers.remove(player);
+		return history;
+	}
+
+	/**
+	 * Copies the entries of a history. Must hold the lock.
+	 *
+	 * @param history The history
+	 *
+	 * @return The entries, oldest first
+	 */
+	private List<SpilledEntry> toSpilledEntries(PlayerHistory history) {
+		List<SpilledEntry> entries = new ArrayList<>(history.size);
+		for (int i = history.size - 1; i >= 0; i--) {
+			int slot = history.slotFromNewest(i);
+			entries.add(new SpilledEntry(paths.get(history.nodes[slot]), history.times[slot],
+					history.results[slot], history.arguments[slot]));
+		}
+		return entries;
+	}
+
+	/**
+	 * @param path The path
+	 *
+	 * @return The index of the path, assigned if needed
+	 */
+	private int indexOf(String path) {
+		Integer index = pathIndices.get(path);
+		if (index == null) {
+			index = paths.size();
+			paths.add(path);
+			pathIndices.put(path, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Packs the arguments into a single String and interns it, as players tend to repeat themselves
+	 *
+	 * @param args The arguments
+	 *
+	 * @return The packed arguments
+	 */
+	private String pack(String[] args) {
+		// every argument starts with the separator, so no arguments and a single empty one differ
+		StringBuilder builder = new StringBuilder();
+		for (String argument : args) {
+			builder.append(ARGUMENT_SEPARATOR).append(argument);
+		}
+		String packed = builder.toString();
+		String interned = internedArguments.get(packed);
+		if (interned != null) {
+			return interned;
+		}
+		if (internedArguments.size() >= MAX_INTERNED) {
+			internedArguments.clear();
+		}
+		internedArguments.put(packed, packed);
+		return packed;
+	}
+
+	/**
+	 * @param packed The packed arguments
+	 *
+	 * @return The arguments
+	 */
+	private static String[] unpack(String packed) {
+		if (packed.isEmpty()) {
+			return new String[0];
+		}
+		return SPLIT_ARGUMENTS.split(packed.substring(1), -1);
+	}
+
+	/**
+	 * @param player The UUID of the player
+	 *
+	 * @return The file his history is spilled to
+	 */
+	private Path fileOf(UUID player) {
+		return spillDirectory.resolve(player.toString() + ".history");
+	}
+
+	/**
+	 * Writes the history. Base keys are written as Strings, as the indices aren't stable across restarts.
+	 *
+	 * @param player  The UUID of the player
+	 * @param entries The entries to write, oldest first
+	 *
+	 * @return True if they were written
+	 */
+	private boolean write(UUID player, List<SpilledEntry> entries) {
+		try (OutputStream stream = Files.newOutputStream(fileOf(player));
+		     DataOutputStream out = new DataOutputStream(stream)) {
+
+			out.writeInt(FILE_VERSION);
+			out.writeInt(entries.size());
+			// oldest first, so reading can just add them
+			for (SpilledEntry entry : entries) {
+				out.writeUTF(entry.path);
+				out.writeLong(entry.time);
+				out.writeByte(entry.result);
+				out.writeUTF(entry.arguments);
+			}
+			return true;
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Couldn't spill the command history of " + player, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Reads and deletes the spill file of a player
+	 *
+	 * @param player The UUID of the player
+	 *
+	 * @return The read entries, oldest first, or null if there are none
+	 */
+	private List<SpilledEntry> read(UUID player) {
+		Path file = fileOf(player);
+		if (!Files.exists(file)) {
+			return null;
+		}
+		try (InputStream stream = Files.newInputStream(file);
+		     DataInputStream in = new DataInputStream(stream)) {
+
+			int version = in.readInt();
+			if (version != FILE_VERSION) {
+				return null;
+			}
+			int size = in.readInt();
+			List<SpilledEntry> entries = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				String path = in.readUTF();
+				long time = in.readLong();
+				byte result = in.readByte();
+				String arguments = in.readUTF();
+				if (result >= 0 && result < RESULTS.length) {
+					entries.add(new SpilledEntry(path, time, result, arguments));
+				}
+			}
+			Files.delete(file);
+			return entries;
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Couldn't read the command history of " + player, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Deletes the spill file of a player
+	 *
+	 * @param player The UUID of the player
+	 */
+	private void delete(UUID player) {
+		try {
+			Files.deleteIfExists(fileOf(player));
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Couldn't delete the command history of " + player, e);
+		}
+	}
+
+	/**
+	 * The ring of entries of a single player
+	 */
+	private static class PlayerHistory {
+		private final int[] nodes;
+		private final long[] times;
+		private final byte[] results;
+		private final String[] arguments;
+		private int next;
+		private int size;
+		private long lastUsed;
+		// changed by every added entry
+		private long modCount;
+
+		/**
+		 * @param capacity The amount of entries to keep
+		 */
+		PlayerHistory(int capacity) {
+			nodes = new int[capacity];
+			times = new long[capacity];
+			results = new byte[capacity];
+			arguments = new String[capacity];
+		}
+
+		/**
+		 * Adds an entry, overwriting the oldest one if full
+		 *
+		 * @param node      The index of the path
+		 * @param time      The time of the command
+		 * @param result    The ordinal of the result
+		 * @param arguments The packed arguments
+		 */
+		void add(int node, long time, byte result, String arguments) {
+			nodes[next] = node;
+			times[next] = time;
+			results[next] = result;
+			this.arguments[next] = arguments;
+
+			next = (next + 1) % nodes.length;
+			size = Math.min(size + 1, nodes.length);
+			lastUsed = Math.max(lastUsed, time);
+			modCount++;
+		}
+
+		/**
+		 * @param index The index, 0 being the newest
+		 *
+		 * @return The slot of the entry
+		 */
+		int slotFromNewest(int index) {
+			return Math.floorMod(next - 1 - index, nodes.length);
+		}
+	}
+
+	/**
+	 * An entry as it is written to a spill file
+	 */
+	private static class SpilledEntry {
+		private final String path;
+		private final long time;
+		private final byte result;
+		private final String arguments;
+
+		/**
+		 * @param path      The path of the node
+		 * @param time      The time of the command
+		 * @param result    The ordinal of the result
+		 * @param arguments The packed arguments
+		 */
+		SpilledEntry(String path, long time, byte result, String arguments) {
+			this.path = path;
+			this.time = time;
+			this.result = result;
+			this.arguments = arguments;
+		}
+	}
+
+	/**
+	 * The entries of a history being spilled and its state when they were copied
+	 */
+	private static class Snapshot {
+		private final PlayerHistory history;
+		private final long modCount;
+		private final List<SpilledEntry> entries;
+
+		/**
+		 * @param history The history
+		 * @param entries Its entries
+		 */
+		Snapshot(PlayerHistory history, List<SpilledEntry> entries) {
+			this.history = history;
+			this.modCount = history.modCount;
+			this.entries = entries;
+		}
+	}
+
+	/**
+	 * A single entry in the history
+	 */
+	public static class HistoryEntry {
+		private final String path;
+		private final long timestamp;
+		private final CommandResultType result;
+		private final String[] args;
+
+		/**
+		 * @param path      The path of the node that handled the command
+		 * @param timestamp The time of the command
+		 * @param result    The result of the command
+		 * @param args      The arguments the tree was called with
+		 */
+		private HistoryEntry(String path, long timestamp, CommandResultType result, String[] args) {
+			this.path = path;
+			this.timestamp = timestamp;
+			this.result = result;
+			this.args = args;
+		}
+
+		/**
+		 * @return The path of the node that handled the command
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * @return The time of the command, in milliseconds since the epoch
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		/**
+		 * @return The result of the command
+		 */
+		public CommandResultType getResult() {
+			return result;
+		}
+
+		/**
+		 * @return The arguments the tree was called with
+		 */
+		public String[] getArgs() {
+			return args.clone();
+		}
+
+		@Override
+		public String toString() {
+			return "HistoryEntry{" +
+					"path='" + path + '\'' +
+					", timestamp=" + timestamp +
+					", result=" + result +
+					", args=" + String.join(" ", args) +
+					'}';
+		}
+	}
+}
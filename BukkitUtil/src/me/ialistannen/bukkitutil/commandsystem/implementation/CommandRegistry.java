@@ -0,0 +1,287 @@
+package me.ialistannen.bukkitutil.commandsystem.implementation;
+
+import me.ialistannen.bukkitutil.commandsystem.PluginMain;
+import me.ialistannen.bukkitutil.commandsystem.base.AbstractCommandNode;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTree;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTreeHolder;
+import me.ialistannen.bukkitutil.commandsystem.util.CommandSystemUtil;
+import me.ialistannen.languageSystem.MessageProvider;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.Plugin;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link CommandTree} shared by all plugins using the command system, instead of one per plugin.
+ * <p>
+ * Every plugin gets a {@link Namespace} for its top level commands. They are registered with Bukkit for that plugin
+ * and answered by an executor using its language, while the tree, the tab completer, the player name index and the
+ * metrics are shared. Once a plugin is disabled, all of its commands are removed in one edit of the tree.
+ * <p>
+ * The history, the audit log and the metrics identify a node by its {@link AbstractCommandNode#getPath() path}, which
+ * starts with the base key of its top level command. So no two top level commands may share a keyword or a base key,
+ * even in different namespaces.
+ * <p>
+ * The registry of the running server is owned by {@link PluginMain#getRegistry()}.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CommandRegistry implements Listener {
+
+	private final Plugin owner;
+	private final CommandTree tree;
+	private final CommandTreeHolder holder;
+	private final DefaultTabCompleter tabCompleter;
+	private final PlayerNameIndex playerNames = new PlayerNameIndex();
+	private final Map<String, Namespace> namespaces = new ConcurrentHashMap<>();
+
+	/**
+	 * @param owner The plugin owning the registry
+	 */
+	public CommandRegistry(@Nonnull Plugin owner) {
+		this.owner = owner;
+		this.tree = new CommandTree(new RootLanguage());
+		this.holder = new CommandTreeHolder(tree);
+		this.tabCompleter = new DefaultTabCompleter(holder, true);
+		tabCompleter.setPlayerNameIndex(playerNames);
+	}
+
+	/**
+	 * Listens for disabled plugins and indexes the online players
+	 */
+	public void register() {
+		CommandSystemUtil.getServerFacade().registerListener(owner, this);
+		playerNames.register(owner);
+	}
+
+	/**
+	 * Returns the shared tree. Set metrics, audit sinks and the like here.
+	 *
+	 * @return The tree holding the commands of all plugins
+	 */
+	@Nonnull
+	public CommandTree getTree() {
+		return tree;
+	}
+
+	/**
+	 * Returns the namespace of a plugin, creating it if it has none yet
+	 *
+	 * @param plugin   The plugin
+	 * @param language The language of the plugin. Used for the messages of its executor and its help commands.
+	 *                 Ignored if the namespace already exists.
+	 *
+	 * @return The namespace of the plugin
+	 */
+	@Nonnull
+	public Namespace getNamespace(@Nonnull Plugin plugin, @Nonnull MessageProvider language) {
+		return namespaces.computeIfAbsent(plugin.getName(), name -> new Namespace(plugin, language));
+	}
+
+	/**
+	 * Returns the namespace of a plugin
+	 *
+	 * @param plugin The plugin
+	 *
+	 * @return The namespace, if the plugin has one
+	 */
+	@SuppressWarnings("unused")
+	public Optional<Namespace> getNamespace(@Nonnull Plugin plugin) {
+		return Optional.ofNullable(namespaces.get(plugin.getName()));
+	}
+
+	/**
+	 * Removes all commands of a plugin. Called when it is disabled.
+	 *
+	 * @param plugin The plugin
+	 */
+	public synchronized void unregister(@Nonnull Plugin plugin) {
+		Namespace namespace = namespaces.remove(plugin.getName());
+		if (namespace == null) {
+			return;
+		}
+		namespace.language.removeReloadListener(namespace.reloadListener);
+		Map<AbstractCommandNode, String> commands = new LinkedHashMap<>(namespace.commands);
+		namespace.commands.clear();
+		tree.removeChildren(tree.getRoot(), commands.keySet());
+		for (String name : commands.values()) {
+			CommandSystemUtil.unregisterCommand(plugin, name);
+		}
+	}
+
+	/**
+	 * @param event The disable event
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPluginDisable(PluginDisableEvent event) {
+		unregister(event.getPlugin());
+	}
+
+	/**
+	 * The commands of one plugin
+	 */
+	public class Namespace {
+		private final Plugin plugin;
+		private final MessageProvider language;
+		private final DefaultCommandExecutor executor;
+		// kept, so it can be removed again
+		private final Runnable reloadListener = tree::invalidateMetadata;
+		// the nodes and the names they were registered with
+		private final Map<AbstractCommandNode, String> commands = new LinkedHashMap<>();
+
+		/**
+		 * @param plugin   The plugin
+		 * @param language The language of the plugin
+		 */
+		private Namespace(Plugin plugin, MessageProvider language) {
+			this.plugin = plugin;
+			this.language = language;
+			this.executor = new DefaultCommandExecutor(holder, language, true);
+
+			// the shared tree doesn't know the language of the plugin
+			language.addReloadListener(reloadListener);
+		}
+
+		/**
+		 * Adds a top level command and registers it for the plugin
+		 *
+		 * @param node       The node of the command
+		 * @param attachHelp If true a {@link DefaultHelpCommand} in the language of the plugin is added to it
+		 *
+		 * @throws IllegalArgumentException if a command with the keyword or base key is already registered, in any
+		 *                                  namespace
+		 */
+		public void addCommand(@Nonnull AbstractCommandNode node, boolean attachHelp) {
+			// one lock for all namespaces, or two plugins could add the same keyword at once
+			synchronized (CommandRegistry.this) {
+				String name = node.getKeyword();
+				if (tree.getTopLevelCommand(name).isPresent()) {
+					throw new IllegalArgumentException("Command already registered: " + name);
+				}
+				for (Namespace namespace : namespaces.values()) {
+					for (AbstractCommandNode command : namespace.commands.keySet()) {
+						if (command.getBaseKey().equals(node.getBaseKey())) {
+							throw new IllegalArgumentException("Base key already used by "
+									+ namespace.plugin.getName() + ": " + node.getBaseKey());
+						}
+					}
+				}
+				tree.addTopLevelChild(node, false, plugin, executor, tabCompleter);
+				commands.put(node, name);
+				if (attachHelp) {
+					tree.setHelpCommand(new DefaultHelpCommand(language, tree, "command_help"), node);
+				}
+			}
+		}
+
+		/**
+		 * Removes a top level command and unregisters it
+		 *
+		 * @param node The node of the command
+		 */
+		@SuppressWarnings("unused")
+		public void removeCommand(@Nonnull AbstractCommandNode node) {
+			synchronized (CommandRegistry.this) {
+				String name = commands.remove(node);
+				if (name == null) {
+					return;
+				}
+				tree.removeChild(node);
+				CommandSystemUtil.unregisterCommand(plugin, name);
+			}
+		}
+
+		/**
+		 * @return The top level commands of the plugin. Unmodifiable.
+		 */
+		@SuppressWarnings("unused")
+		@Nonnull
+		public Map<AbstractCommandNode, String> getCommands() {
+			synchronized (CommandRegistry.this) {
+				return Collections.unmodifiableMap(new LinkedHashMap<>(commands));
+			}
+		}
+
+		/**
+		 * @return The executor sending the messages in the language of the plugin
+		 */
+		@SuppressWarnings("unused")
+		@Nonnull
+		public DefaultCommandExecutor getExecutor() {
+			return executor;
+		}
+
+		/**
+		 * @return The plugin owning the commands
+		 */
+		@Nonnull
+		public Plugin getPlugin() {
+			return plugin;
+		}
+	}
+
+	/**
+	 * The language of the shared root. The root is never shown, the nodes of every plugin bring their own language.
+	 */
+	private class RootLanguage implements MessageProvider {
+		private Locale locale = Locale.ENGLISH;
+
+		@Override
+		public void setDefaultFilesPackage(String packageName) {
+			// nothing to read
+		}
+
+		@Override
+		public void setFileLocation(Path path) {
+			// nothing to read
+		}
+
+		@Override
+		public Locale setLanguage(Locale locale) {
+			this.locale = locale;
+			return locale;
+		}
+
+		@Override
+		public Locale getLanguage() {
+			return locale;
+		}
+
+		@Override
+		public String tr(String key, Object... formattingObjects) {
+			return key;
+		}
+
+		@Override
+		public String trOrDefault(String key, String defaultString, Object... formattingObjects) {
+			return MessageFormat.format(defaultString, formattingObjects);
+		}
+
+		@Override
+		public boolean containsKey(String key) {
+			return false;
+		}
+
+		@Override
+		public long getTranslationHash() {
+			// the translations of the tree are the ones of all plugins
+			long hash = 0;
+			for (Namespace namespace : new TreeMap<>(namespaces).values()) {
+				hash = 31 * hash + namespace.plugin.getName().hashCode();
+				hash = 31 * hash + namespace.language.getTranslationHash();
+			}
+			return hash;
+		}
+	}
+}
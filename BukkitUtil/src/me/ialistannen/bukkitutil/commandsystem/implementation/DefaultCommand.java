@@ -67,6 +67,11 @@ public abstract class DefaultCommand extends AbstractCommandNode {
 		return !permission.isEmpty() && !permissible.hasPermission(permission);
 	}
 
+	@Override
+	public String getRequiredPermission() {
+		return permission;
+	}
+
 	@Override
 	public boolean isNotAble(CommandSender sender) {
 		return !canUse.test(sender);
@@ -1,15 +1,22 @@
 package me.ialistannen.bukkitutil.commandsystem.implementation;
 
-import me.ialistannen.bukkitutil.commandsystem.PluginMain;
 import me.ialistannen.bukkitutil.commandsystem.base.AbstractCommandNode;
 import me.ialistannen.bukkitutil.commandsystem.base.CommandResult;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandResultType;
 import me.ialistannen.bukkitutil.commandsystem.base.CommandTree;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTreeHolder;
+import me.ialistannen.bukkitutil.commandsystem.replay.WorkloadRecorder;
+import me.ialistannen.bukkitutil.commandsystem.util.CommandSystemUtil;
 import me.ialistannen.languageSystem.MessageProvider;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -19,6 +26,10 @@ import java.util.stream.Collectors;
  * <b>Language Keys:</b>
  * <ul>
  * <li>"command_not_found" ==> if a command was not found</li>
+ * <li>"command_not_found_suggestion" ==> The closest keywords, if a command was not found. Optional.
+ * <ul>
+ * <li>{0} ==> The suggested keywords</li>
+ * </ul></li>
  * <li>"permission_denied"</li>
  * <li>"wrong_sender_type" ==> If the {@link CommandSender} is of the wrong type</li>
  * </ul>
@@ -26,11 +37,16 @@ import java.util.stream.Collectors;
 @SuppressWarnings("WeakerAccess")
 public class DefaultCommandExecutor implements CommandExecutor {
 
-	private final CommandTree tree;
+	private static final int MAX_SUGGESTIONS = 3;
+
+	private final CommandTreeHolder holder;
 	private final MessageProvider language;
 
 	private boolean assumeCommandIsPartOfTree;
 
+	private CommandAdmissionQueue admissionQueue;
+	private CommandHistory history;
+	private WorkloadRecorder recorder;
 
 	/**
 	 * @param tree     The CommandTree
@@ -50,32 +66,156 @@ public class DefaultCommandExecutor implements CommandExecutor {
 	 */
 	@SuppressWarnings("unused")
 	public DefaultCommandExecutor(CommandTree tree, MessageProvider language, boolean assumeCommandIsPartOfTree) {
-		this.tree = tree;
+		this(new CommandTreeHolder(tree), language, assumeCommandIsPartOfTree);
+	}
+
+	/**
+	 * Executes the commands on the tree of the holder. Replacing it there replaces it for this executor too.
+	 *
+	 * @param holder                    The holder of the CommandTree
+	 * @param language                  Lhe Language system
+	 * @param assumeCommandIsPartOfTree If true, the command's name will be treated as the first argument.
+	 */
+	@SuppressWarnings("unused")
+	public DefaultCommandExecutor(CommandTreeHolder holder, MessageProvider language,
+	                              boolean assumeCommandIsPartOfTree) {
+		this.holder = holder;
 		this.language = language;
 		this.assumeCommandIsPartOfTree = assumeCommandIsPartOfTree;
 	}
 
 	@Override
 	public boolean onCommand(CommandSender sender, Command command, String alias, String[] args) {
-		String[] arguments = args;
-		if (assumeCommandIsPartOfTree) {
-			arguments = new String[args.length + 1];
-			System.arraycopy(args, 0, arguments, 1, args.length);
-			arguments[0] = command.getName();
+		String name = assumeCommandIsPartOfTree ? command.getName() : null;
+
+		if (recorder != null) {
+			recorder.recordExecution(sender, withName(name, args));
+		}
+
+		if (admissionQueue != null) {
+			admissionQueue.submit(sender, () -> dispatch(sender, name, args));
+		} else {
+			dispatch(sender, name, args);
 		}
+		return true;
+	}
+
+	/**
+	 * Sets the admission queue all commands go through
+	 *
+	 * @param admissionQueue The queue to use. Null to execute all commands right away.
+	 */
+	@SuppressWarnings("unused")
+	public void setAdmissionQueue(@Nullable CommandAdmissionQueue admissionQueue) {
+		this.admissionQueue = admissionQueue;
+	}
+
+	/**
+	 * Sets the recorder all commands are written to
+	 *
+	 * @param recorder The recorder. Null to not record anything.
+	 */
+	@SuppressWarnings("unused")
+	public void setRecorder(@Nullable WorkloadRecorder recorder) {
+		this.recorder = recorder;
+	}
 
-		CommandResult commandResult = tree.executeCommand(sender, arguments);
+	/**
+	 * Sets the history the commands of players are recorded in
+	 *
+	 * @param history The history to use. Null to not record anything.
+	 */
+	@SuppressWarnings("unused")
+	public void setHistory(@Nullable CommandHistory history) {
+		this.history = history;
+	}
+
+	/**
+	 * Returns the history the commands of players are recorded in
+	 *
+	 * @return The history, if one is set
+	 */
+	@SuppressWarnings("unused")
+	@Nonnull
+	public Optional<CommandHistory> getHistory() {
+		return Optional.ofNullable(history);
+	}
+
+	/**
+	 * Executes the last command of a player again. It goes through the admission queue, if one is set.
+	 *
+	 * @param player The player to repeat the command for
+	 * @param skip   A node whose entries are skipped, normally the one calling this method. Null to skip nothing.
+	 *
+	 * @return True if there was a command to repeat
+	 */
+	@SuppressWarnings("unused")
+	public boolean repeatLast(@Nonnull Player player, @Nullable AbstractCommandNode skip) {
+		if (history == null) {
+			return false;
+		}
+		Optional<CommandHistory.HistoryEntry> last = history.getLast(
+				player.getUniqueId(),
+				skip == null ? null : skip.getPath()
+		);
+		if (!last.isPresent()) {
+			return false;
+		}
+		String[] args = last.get().getArgs();
+		if (admissionQueue != null) {
+			admissionQueue.submit(player, () -> dispatch(player, null, args));
+		} else {
+			dispatch(player, null, args);
+		}
+		return true;
+	}
+
+	/**
+	 * Executes the command on the current tree, which is held until the command is done
+	 *
+	 * @param sender The sender of the command
+	 * @param name   The name of the top level command. Null if the arguments start at the root.
+	 * @param args   The arguments following the name
+	 */
+	private void dispatch(CommandSender sender, String name, String[] args) {
+		try (CommandTreeHolder.Lease lease = holder.acquire()) {
+			dispatch(lease.getTree(), sender, name, args);
+		}
+	}
+
+	/**
+	 * Executes the command and sends the messages for the result
+	 *
+	 * @param tree   The tree to execute it on
+	 * @param sender The sender of the command
+	 * @param name   The name of the top level command. Null if the arguments start at the root.
+	 * @param args   The arguments following the name
+	 */
+	private void dispatch(CommandTree tree, CommandSender sender, String name, String[] args) {
+		CommandResult commandResult = name == null
+				? tree.executeCommand(sender, args)
+				: tree.executeTopLevel(name, sender, args);
+		if (commandResult.getResultType() == CommandResultType.SUCCESSFUL && history == null) {
+			return;
+		}
+
+		// only the rarer paths need the full command
+		String[] arguments = withName(name, args);
+		if (history != null && sender instanceof Player && commandResult.getCommandNode().isPresent()) {
+			history.record(((Player) sender).getUniqueId(), commandResult.getCommandNode().get(), arguments,
+					commandResult.getResultType());
+		}
 		switch (commandResult.getResultType()) {
 			case SUCCESSFUL:
 				break;
 			case SEND_USAGE:
 				Optional<AbstractCommandNode> node = commandResult.getCommandNode();
 				if (!node.isPresent()) {
-					PluginMain.getInstance().getLogger().warning("How the heck can this happen?" +
+					CommandSystemUtil.getServerFacade().getLogger().warning("How the heck can this happen?" +
 							" Send usage, but no command defined.");
 					sender.sendMessage(language.tr("command_not_found",
 							Arrays.stream(arguments).collect(Collectors.joining(" "))));
-					return true;
+					return;
 				}
 				sender.sendMessage(node.get().getUsage());
 				break;
@@ -88,8 +228,40 @@ public class DefaultCommandExecutor implements CommandExecutor {
 			case NOT_FOUND:
 				sender.sendMessage(language.tr("command_not_found",
 						Arrays.stream(arguments).collect(Collectors.joining(" "))));
+				sendSuggestions(tree, sender, arguments);
 				break;
 		}
-		return true;
+	}
+
+	/**
+	 * @param name The name of the top level command. Null if there is none.
+	 * @param args The arguments following it
+	 *
+	 * @return The arguments starting at the root. The same array if there is no name.
+	 */
+	private static String[] withName(String name, String[] args) {
+		if (name == null) {
+			return args;
+		}
+		String[] arguments = new String[args.length + 1];
+		arguments[0] = name;
+		System.arraycopy(args, 0, arguments, 1, args.length);
+		return arguments;
+	}
+
+	/**
+	 * Sends the closest keywords, if any are close enough
+	 *
+	 * @param tree      The tree to search the keywords in
+	 * @param sender    The sender to send them to
+	 * @param arguments The arguments he entered
+	 */
+	private void sendSuggestions(CommandTree tree, CommandSender sender, String[] arguments) {
+		List<String> suggestions = tree.getSuggestionIndex().suggest(sender, arguments, MAX_SUGGESTIONS);
+		if (suggestions.isEmpty()) {
+			return;
+		}
+		sender.sendMessage(language.trOrDefault("command_not_found_suggestion", "&7Did you mean: &6{0}&7?",
+				String.join("&7, &6", suggestions)));
 	}
 }
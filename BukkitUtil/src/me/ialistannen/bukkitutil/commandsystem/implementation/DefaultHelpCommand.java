@@ -21,7 +21,10 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -52,6 +55,10 @@ public class DefaultHelpCommand extends AbstractCommandNode {
 	private final CommandTree tree;
 	private final String KEY;
 
+	private final Map<RenderKey, CommandFilterable> rendered = new ConcurrentHashMap<>();
+	private volatile long renderedVersion;
+	private volatile long renderedGeneration;
+
 	/**
 	 * Please see {@link DefaultHelpCommand} for the needed language keys
 	 *
@@ -75,6 +82,11 @@ public class DefaultHelpCommand extends AbstractCommandNode {
 		return !permissible.hasPermission(language.tr(KEY + "_permission"));
 	}
 
+	@Override
+	public String getRequiredPermission() {
+		return language.tr(KEY + "_permission");
+	}
+
 	@Override
 	public boolean isNotAble(CommandSender sender) {
 		return false;
@@ -89,6 +101,23 @@ public class DefaultHelpCommand extends AbstractCommandNode {
 
 	@Override
 	public CommandResultType execute(CommandSender sender, String[] args) {
+		long start = System.nanoTime();
+		try {
+			return render(sender, args);
+		} finally {
+			tree.getMetrics().onHelpRendered(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Renders the help and sends it
+	 *
+	 * @param sender The sender to send it to
+	 * @param args   The arguments of the help command
+	 *
+	 * @return The result of the command
+	 */
+	private CommandResultType render(CommandSender sender, String[] args) {
 		AtomicInteger page = new AtomicInteger(0);
 		AtomicInteger depth = new AtomicInteger(2);
 		AtomicInteger entriesPerPage = new AtomicInteger(10);
@@ -143,14 +172,14 @@ public class DefaultHelpCommand extends AbstractCommandNode {
 				.setSearchPattern(searchFilter.toString())
 				.setSearchModes(searchUsingRegEx.get()
 						? SearchMode.REGEX_FIND
-						: SearchMode.CONTAINS).build();
+						: SearchMode.CONTAINS_IGNORE_CASE).build();
 
 		if (args.length > 0) {
 			AbstractCommandNode.FindCommandResult result = tree.find(new ArrayDeque<>(Arrays.asList(args)), sender);
 
 			if (result.getResult() == CommandResultType.SUCCESSFUL) {
 				List<PagerFilterable> entries =
-						getCommandFilterable(language, tree, showUsage.get(), result.getCommandNode(), depth.get(), 0);
+						getCommandFilterable(showUsage.get(), result.getCommandNode(), depth.get(), 0);
 				Pager.getPageFromFilterable(options, entries)
 						.send(sender, language);
 			}
@@ -162,7 +191,7 @@ public class DefaultHelpCommand extends AbstractCommandNode {
 		}
 
 		List<PagerFilterable> entries =
-				getCommandFilterable(language, tree, showUsage.get(), tree.getRoot(), depth.get(), 0);
+				getCommandFilterable(showUsage.get(), tree.getRoot(), depth.get(), 0);
 
 		Pager.getPageFromFilterable(options, entries)
 				.send(sender, language);
@@ -176,15 +205,12 @@ public class DefaultHelpCommand extends AbstractCommandNode {
 	 * @param maxDepth The maximum depth. Index based. 0 ==> Just this command, 1 ==> Command and children
 	 * @param counter  The current counter. Just supply 0. Used for recursion.
 	 */
-	private static List<PagerFilterable> getCommandFilterable(MessageProvider language, CommandTree tree,
-	                                                          boolean withUsage, AbstractCommandNode node,
-	                                                          int maxDepth, int counter) {
+	private List<PagerFilterable> getCommandFilterable(boolean withUsage, AbstractCommandNode node,
+	                                                   int maxDepth, int counter) {
 		List<PagerFilterable> list = new ArrayList<>();
 
 		if (!(node instanceof CommandRoot)) {
-			PagerFilterable filterable = new CommandFilterable(node, withUsage, tree.getChildren(node).size(),
-					language, counter);
-			list.add(filterable);
+			list.add(getRendered(node, withUsage, tree.getChildren(node).size(), counter));
 		}
 		else {
 			counter--;
@@ -195,12 +221,83 @@ public class DefaultHelpCommand extends AbstractCommandNode {
 		}
 
 		for (AbstractCommandNode commandNode : tree.getChildren(node)) {
-			list.addAll(getCommandFilterable(language, tree, withUsage, commandNode, maxDepth, counter + 1));
+			list.addAll(getCommandFilterable(withUsage, commandNode, maxDepth, counter + 1));
 		}
 
 		return list;
 	}
 
+	/**
+	 * Returns the rendered entry of a node, rendering it only if it isn't cached yet.
+	 * <p>
+	 * The cache is dropped when the tree changes or its {@link CommandTree#getMetadataGeneration() metadata} is
+	 * invalidated, e.g. because the language files were reloaded.
+	 *
+	 * @param node           The node
+	 * @param withUsage      Whether the usage is shown
+	 * @param childrenAmount The amount of children of the node
+	 * @param depth          The depth of the node in the help
+	 *
+	 * @return The rendered entry
+	 */
+	private CommandFilterable getRendered(AbstractCommandNode node, boolean withUsage, int childrenAmount,
+	                                      int depth) {
+		long version = tree.getVersion();
+		long generation = tree.getMetadataGeneration();
+		if (version != renderedVersion || generation != renderedGeneration) {
+			rendered.clear();
+			renderedVersion = version;
+			renderedGeneration = generation;
+		}
+		RenderKey key = new RenderKey(node, language.getLanguage(), withUsage, childrenAmount, depth);
+		return rendered.computeIfAbsent(key,
+				ignored -> new CommandFilterable(node, withUsage, childrenAmount, language, depth));
+	}
+
+	/**
+	 * Everything a rendered entry depends on
+	 */
+	private static class RenderKey {
+		private final AbstractCommandNode node;
+		private final Locale locale;
+		private final boolean withUsage;
+		private final int childrenAmount;
+		private final int depth;
+
+		/**
+		 * @param node           The node
+		 * @param locale         The locale of the language
+		 * @param withUsage      Whether the usage is shown
+		 * @param childrenAmount The amount of children
+		 * @param depth          The depth in the help
+		 */
+		RenderKey(AbstractCommandNode node, Locale locale, boolean withUsage, int childrenAmount, int depth) {
+			this.node = node;
+			this.locale = locale;
+			this.withUsage = withUsage;
+			this.childrenAmount = childrenAmount;
+			this.depth = depth;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			RenderKey that = (RenderKey) o;
+			return node == that.node && withUsage == that.withUsage && childrenAmount == that.childrenAmount
+					&& depth == that.depth && Objects.equals(locale, that.locale);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(node), locale, withUsage, childrenAmount, depth);
+		}
+	}
+
 	private static class CommandFilterable implements PagerFilterable {
 
 		private AbstractCommandNode node;
@@ -210,6 +307,7 @@ public class DefaultHelpCommand extends AbstractCommandNode {
 		private int depth;
 
 		private List<String> allLines;
+		private List<String> strippedLines;
 
 		CommandFilterable(AbstractCommandNode node, boolean showUsage, int childrenAmount,
 		                  MessageProvider language, int depth) {
@@ -225,8 +323,8 @@ public class DefaultHelpCommand extends AbstractCommandNode {
 		@Override
 		public boolean accepts(Options options) {
 			// match against what is shown
-			for (String line : allLines) {
-				if (options.matchesPattern(strip(line))) {
+			for (String line : strippedLines) {
+				if (options.matchesPattern(line)) {
 					return true;
 				}
 			}
@@ -278,6 +376,7 @@ public class DefaultHelpCommand extends AbstractCommandNode {
 			}
 
 			allLines = list;
+			strippedLines = list.stream().map(CommandFilterable::strip).collect(Collectors.toList());
 		}
 
 		@Override
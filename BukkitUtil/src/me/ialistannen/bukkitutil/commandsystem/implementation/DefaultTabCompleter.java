@@ -1,25 +1,63 @@
 package me.ialistannen.bukkitutil.commandsystem.implementation;
 
 import me.ialistannen.bukkitutil.commandsystem.base.AbstractCommandNode;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandMetrics;
 import me.ialistannen.bukkitutil.commandsystem.base.CommandResultType;
 import me.ialistannen.bukkitutil.commandsystem.base.CommandTree;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTreeHolder;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTree.InvalidationListener;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTree.InvalidationReason;
+import me.ialistannen.bukkitutil.commandsystem.replay.WorkloadRecorder;
+import me.ialistannen.bukkitutil.other.CaseFolding;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The default TabCompleter
+ * <p>
+ * Keeps a completion session per sender, for the command and alias he completed last. If the new input only extends
+ * the last argument of the previous one, the previous candidates are filtered again instead of asking the tree. The
+ * same input within a short window is answered from the session too. This assumes the completions of a node only
+ * depend on the arguments before the one being completed, which is true for all nodes filtering by prefix. Use
+ * {@link #setSessionTimeout(long, TimeUnit)} with 0 to disable it.
  */
 @SuppressWarnings("WeakerAccess") // It said the class can be package-private. I disagree.
 public class DefaultTabCompleter implements TabCompleter {
 
-	private final CommandTree tree;
+	private final CommandTreeHolder holder;
+	private final InvalidationListener sessionInvalidator = new InvalidationListener() {
+		@Override
+		public void onPreInvalidate(InvalidationReason reason, AbstractCommandNode parent,
+		                            AbstractCommandNode child) {
+			// nothing to do before
+		}
+
+		@Override
+		public void onPostInvalidate(InvalidationReason reason, AbstractCommandNode parent,
+		                             AbstractCommandNode child) {
+			sessions.clear();
+		}
+	};
 
 	private boolean assumeCommandIsPartOfTree;
 
+	// cleared by the invalidations, which may come from any thread
+	private final Map<CommandSender, CompletionSession> sessions = Collections.synchronizedMap(new WeakHashMap<>());
+	private long sessionTimeoutMillis = TimeUnit.SECONDS.toMillis(2);
+	private long debounceMillis = 50;
+	private WorkloadRecorder recorder;
+	private PlayerNameIndex playerNames;
+
 	/**
 	 *
 	 * @param tree The {@link CommandTree}
@@ -37,12 +75,99 @@ public class DefaultTabCompleter implements TabCompleter {
 	 */
 	@SuppressWarnings("unused")
 	public DefaultTabCompleter(CommandTree tree, boolean assumeCommandIsPartOfTree) {
-		this.tree = tree;
+		this(new CommandTreeHolder(tree), assumeCommandIsPartOfTree);
+	}
+
+	/**
+	 * Completes on the tree of the holder. Replacing it there replaces it for this completer too.
+	 *
+	 * @param holder                    The holder of the {@link CommandTree}
+	 * @param assumeCommandIsPartOfTree If true, the command's name will be treated as the first argument.
+	 */
+	@SuppressWarnings("unused")
+	public DefaultTabCompleter(CommandTreeHolder holder, boolean assumeCommandIsPartOfTree) {
+		this.holder = holder;
 		this.assumeCommandIsPartOfTree = assumeCommandIsPartOfTree;
+
+		holder.getTree().addInvalidationListener(sessionInvalidator);
+		holder.addSwapListener((oldTree, newTree) -> {
+			oldTree.removeInvalidationListener(sessionInvalidator);
+			newTree.addInvalidationListener(sessionInvalidator);
+			sessions.clear();
+		});
+	}
+
+	/**
+	 * Sets how long the candidates of a session may be reused
+	 *
+	 * @param timeout The timeout. 0 to disable the sessions.
+	 * @param unit    The unit of the timeout
+	 */
+	@SuppressWarnings("unused")
+	public void setSessionTimeout(long timeout, @Nonnull TimeUnit unit) {
+		this.sessionTimeoutMillis = unit.toMillis(timeout);
+		sessions.clear();
+	}
+
+	/**
+	 * Sets the window in which the same input is answered from the session
+	 *
+	 * @param window The window
+	 * @param unit   The unit of the window
+	 */
+	@SuppressWarnings("unused")
+	public void setDebounceWindow(long window, @Nonnull TimeUnit unit) {
+		this.debounceMillis = unit.toMillis(window);
+	}
+
+	/**
+	 * Sets the recorder all tab completions are written to
+	 *
+	 * @param recorder The recorder. Null to not record anything.
+	 */
+	@SuppressWarnings("unused")
+	public void setRecorder(@Nullable WorkloadRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	/**
+	 * Sets the index used to complete player names, when a node asks for all online players
+	 *
+	 * @param playerNames The registered index. Null to let the server complete them.
+	 */
+	@SuppressWarnings("unused")
+	public void setPlayerNameIndex(@Nullable PlayerNameIndex playerNames) {
+		this.playerNames = playerNames;
 	}
 
 	@Override
 	public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+		try (CommandTreeHolder.Lease lease = holder.acquire()) {
+			CommandTree tree = lease.getTree();
+			CommandMetrics metrics = tree.getMetrics();
+			long start = System.nanoTime();
+
+			List<String> completions = complete(tree, sender, command, alias, args, metrics);
+
+			metrics.onTabComplete(completions == null ? -1 : completions.size(), System.nanoTime() - start);
+			return completions;
+		}
+	}
+
+	/**
+	 * Answers the completion from the session or the tree
+	 *
+	 * @param tree    The tree to complete on
+	 * @param sender  The sender
+	 * @param command The command
+	 * @param alias   The used alias
+	 * @param args    The arguments
+	 * @param metrics The metrics to report the session hits to
+	 *
+	 * @return The completions. Null for all online, visible players, if no {@link PlayerNameIndex} is set.
+	 */
+	private List<String> complete(CommandTree tree, CommandSender sender, Command command, String alias,
+	                              String[] args, CommandMetrics metrics) {
 		String[] arguments = args;
 		if (assumeCommandIsPartOfTree) {
 			arguments = new String[args.length + 1];
@@ -50,10 +175,117 @@ public class DefaultTabCompleter implements TabCompleter {
 			arguments[0] = command.getName();
 		}
 
+		if (recorder != null) {
+			recorder.recordTabComplete(sender, arguments);
+		}
+
+		long now = System.currentTimeMillis();
+		CompletionSession session = sessions.get(sender);
+		if (session != null) {
+			List<String> reused = session.reuse(command.getName(), alias, arguments, now, sessionTimeoutMillis,
+					debounceMillis);
+			metrics.onCacheAccess(CommandMetrics.Cache.TAB_COMPLETION, reused != null);
+			if (reused != null) {
+				return reused;
+			}
+			sessions.remove(sender);
+		} else {
+			metrics.onCacheAccess(CommandMetrics.Cache.TAB_COMPLETION, false);
+		}
+
 		AbstractCommandNode.FindTabCompleteResult result = tree.doTabComplete(sender, alias, arguments);
 		if (result.getResult() == CommandResultType.SUCCESSFUL) {
+			if (result.getResultList() == null && playerNames != null) {
+				// players come and go, so this is never kept in the session
+				return playerNames.complete(sender, arguments.length == 0 ? "" : arguments[arguments.length - 1]);
+			}
+			// null means "all players", which we can't filter
+			if (sessionTimeoutMillis > 0 && result.getResultList() != null && arguments.length > 0) {
+				sessions.put(sender, new CompletionSession(command.getName(), alias, arguments, result.getResultList(),
+						now));
+			}
 			return result.getResultList();
 		}
 		return Collections.emptyList();
 	}
+
+	/**
+	 * The last completion of a sender
+	 */
+	private static class CompletionSession {
+		private final String command;
+		private final String alias;
+		private final String[] arguments;
+		private final List<String> candidates;
+		private final long createdAt;
+		private long lastUsed;
+
+		/**
+		 * @param command    The name of the completed command
+		 * @param alias      The alias it was completed with
+		 * @param arguments  The completed arguments
+		 * @param candidates The completions for them
+		 * @param now        The current time in milliseconds
+		 */
+		CompletionSession(String command, String alias, String[] arguments, List<String> candidates, long now) {
+			this.command = command;
+			this.alias = alias;
+			this.arguments = arguments.clone();
+			this.candidates = new ArrayList<>(candidates);
+			this.createdAt = now;
+			this.lastUsed = now;
+		}
+
+		/**
+		 * Tries to answer the new input from this session. Filters the candidates in place, if the last argument
+		 * was extended.
+		 *
+		 * @param newCommand   The name of the command being completed
+		 * @param newAlias     The alias it is completed with
+		 * @param newArguments The new arguments
+		 * @param now          The current time in milliseconds
+		 * @param timeout      The time in milliseconds this session may be used
+		 * @param debounce     The time in milliseconds the same input is answered without filtering
+		 *
+		 * @return A copy of the candidates or null if the session can't answer it
+		 */
+		synchronized List<String> reuse(String newCommand, String newAlias, String[] newArguments, long now,
+		                                long timeout, long debounce) {
+			if (now - createdAt > timeout || newArguments.length != arguments.length) {
+				return null;
+			}
+			// without the name in the arguments, "/a x" and "/b xy" would look alike
+			if (!command.equals(newCommand) || !alias.equalsIgnoreCase(newAlias)) {
+				return null;
+			}
+			int last = arguments.length - 1;
+			for (int i = 0; i < last; i++) {
+				if (!arguments[i].equals(newArguments[i])) {
+					return null;
+				}
+			}
+
+			String previousToken = arguments[last];
+			String newToken = newArguments[last];
+
+			if (newToken.equals(previousToken)) {
+				if (now - lastUsed > debounce) {
+					return null;
+				}
+				lastUsed = now;
+				// the server may modify the list
+				return new ArrayList<>(candidates);
+			}
+
+			if (newToken.length() < previousToken.length()
+					|| !CaseFolding.startsWithIgnoreCase(newToken, previousToken)) {
+				return null;
+			}
+
+			candidates.removeIf(candidate -> !CaseFolding.startsWithIgnoreCase(candidate, newToken));
+			arguments[last] = newToken;
+			lastUsed = now;
+			return new ArrayList<>(candidates);
+		}
+	}
 }
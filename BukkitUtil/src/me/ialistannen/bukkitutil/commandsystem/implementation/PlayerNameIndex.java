@@ -0,0 +1,224 @@
+package me.ialistannen.bukkitutil.commandsystem.implementation;
+
+import me.ialistannen.bukkitutil.commandsystem.util.CommandSystemUtil;
+import me.ialistannen.bukkitutil.commandsystem.util.ServerFacade;
+import me.ialistannen.bukkitutil.other.CaseFolding;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The names of the online players in a prefix trie, kept up to date by the join and quit events.
+ * <p>
+ * Completing a name walks the prefix and collects the players below it, instead of filtering all online players.
+ * The {@link DefaultTabCompleter} uses it for nodes returning null ("all online, visible players"), if one is set.
+ * <p>
+ * The names are {@link CaseFolding folded}, the completions are the real names in alphabetical order.
+ */
+@SuppressWarnings("WeakerAccess")
+public class PlayerNameIndex implements Listener {
+
+	private final TrieNode root = new TrieNode();
+	private int size;
+
+	/**
+	 * Registers the listener and adds the players that are already online
+	 *
+	 * @param plugin The plugin to register the listener for
+	 *
+	 * @see ServerFacade#registerListener(Plugin, Listener)
+	 */
+	public void register(@Nonnull Plugin plugin) {
+		ServerFacade facade = CommandSystemUtil.getServerFacade();
+		facade.registerListener(plugin, this);
+		for (Player player : facade.getOnlinePlayers()) {
+			add(player);
+		}
+	}
+
+	/**
+	 * Adds a player. Called when he joins.
+	 *
+	 * @param player The player to add
+	 */
+	public synchronized void add(@Nonnull Player player) {
+		String folded = CaseFolding.fold(player.getName());
+		TrieNode node = root;
+		for (int i = 0; i < folded.length(); i++) {
+			node = node.getOrCreateChild(folded.charAt(i));
+		}
+		if (node.players.contains(player)) {
+			return;
+		}
+		node.players.add(player);
+
+		node = root;
+		node.count++;
+		for (int i = 0; i < folded.length(); i++) {
+			node = node.getChild(folded.charAt(i));
+			node.count++;
+		}
+		size++;
+	}
+
+	/**
+	 * Removes a player. Called when he quits.
+	 *
+	 * @param player The player to remove
+	 */
+	public synchronized void remove(@Nonnull Player player) {
+		String folded = CaseFolding.fold(player.getName());
+		TrieNode node = root;
+		for (int i = 0; i < folded.length() && node != null; i++) {
+			node = node.getChild(folded.charAt(i));
+		}
+		if (node == null || !node.players.remove(player)) {
+			return;
+		}
+
+		node = root;
+		node.count--;
+		for (int i = 0; i < folded.length(); i++) {
+			TrieNode child = node.getChild(folded.charAt(i));
+			child.count--;
+			if (child.count == 0) {
+				// nobody below it any more
+				node.removeChild(folded.charAt(i));
+				break;
+			}
+			node = child;
+		}
+		size--;
+	}
+
+	/**
+	 * Returns the names of the players starting with the prefix, that the viewer can see
+	 *
+	 * @param viewer The sender completing. Only players he can see are returned, if he is a player.
+	 * @param prefix The prefix of the name. Case is ignored.
+	 *
+	 * @return The matching names, in alphabetical order
+	 */
+	@Nonnull
+	public synchronized List<String> complete(@Nonnull CommandSender viewer, @Nonnull String prefix) {
+		TrieNode node = root;
+		for (int i = 0; i < prefix.length() && node != null; i++) {
+			node = node.getChild(CaseFolding.fold(prefix.charAt(i)));
+		}
+		List<String> names = new ArrayList<>();
+		if (node != null) {
+			collect(node, viewer instanceof Player ? (Player) viewer : null, names);
+		}
+		return names;
+	}
+
+	/**
+	 * @param node   The node to collect the players below
+	 * @param viewer The player who must see them. Null if everybody may be returned.
+	 * @param names  The list to add the names to
+	 */
+	private void collect(TrieNode node, Player viewer, List<String> names) {
+		for (Player player : node.players) {
+			if (viewer == null || viewer.canSee(player)) {
+				names.add(player.getName());
+			}
+		}
+		for (int i = 0; i < node.childCount; i++) {
+			collect(node.children[i], viewer, names);
+		}
+	}
+
+	/**
+	 * @return The amount of indexed players
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @param event The join event
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onJoin(PlayerJoinEvent event) {
+		add(event.getPlayer());
+	}
+
+	/**
+	 * @param event The quit event
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onQuit(PlayerQuitEvent event) {
+		remove(event.getPlayer());
+	}
+
+	/**
+	 * A node of the trie. The children are sorted by their char.
+	 */
+	private static class TrieNode {
+		private char[] keys = new char[0];
+		private TrieNode[] children = new TrieNode[0];
+		private int childCount;
+		private final List<Player> players = new ArrayList<>(1);
+		// the players at and below this node
+		private int count;
+
+		/**
+		 * @param key The char
+		 *
+		 * @return The child or null if there is none
+		 */
+		TrieNode getChild(char key) {
+			int index = Arrays.binarySearch(keys, 0, childCount, key);
+			return index < 0 ? null : children[index];
+		}
+
+		/**
+		 * @param key The char
+		 *
+		 * @return The child, created if there was none
+		 */
+		TrieNode getOrCreateChild(char key) {
+			int index = Arrays.binarySearch(keys, 0, childCount, key);
+			if (index >= 0) {
+				return children[index];
+			}
+			int insertAt = -index - 1;
+			if (childCount == keys.length) {
+				int capacity = Math.max(2, childCount * 2);
+				keys = Arrays.copyOf(keys, capacity);
+				children = Arrays.copyOf(children, capacity);
+			}
+			System.arraycopy(keys, insertAt, keys, insertAt + 1, childCount - insertAt);
+			System.arraycopy(children, insertAt, children, insertAt + 1, childCount - insertAt);
+			TrieNode child = new TrieNode();
+			keys[insertAt] = key;
+			children[insertAt] = child;
+			childCount++;
+			return child;
+		}
+
+		/**
+		 * @param key The char of the child to remove
+		 */
+		void removeChild(char key) {
+			int index = Arrays.binarySearch(keys, 0, childCount, key);
+			if (index < 0) {
+				return;
+			}
+			System.arraycopy(keys, index + 1, keys, index, childCount - index - 1);
+			System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+			childCount--;
+			children[childCount] = null;
+		}
+	}
+}
@@ -0,0 +1,258 @@
+package me.ialistannen.bukkitutil.commandsystem.metrics;
+
+import me.ialistannen.bukkitutil.commandsystem.base.AbstractCommandNode;
+import me.ialistannen.bukkitutil.commandsystem.base.OrdinalTable;
+
+import javax.annotation.Nonnull;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+/**
+ * Accounts the heap allocated by every command, per node.
+ * <p>
+ * Uses the allocation counter of the executing thread ({@link com.sun.management.ThreadMXBean}), so only allocations
+ * on that thread are seen. Check {@link #isSupported()} before using it, on other VMs it measures nothing.
+ * <p>
+ * The distribution per node is kept in power of two buckets, so the percentiles are upper bounds with a factor
+ * of two precision.
+ */
+@SuppressWarnings("WeakerAccess")
+public class AllocationTracker {
+
+	private static final int BUCKETS = 64;
+
+	private final com.sun.management.ThreadMXBean threadBean;
+	private final long warningThresholdBytes;
+	private final Logger logger;
+
+	private final OrdinalTable<NodeAllocations> nodes = new OrdinalTable<>();
+
+	/**
+	 * @param warningThresholdBytes Executions allocating more are logged. 0 or less to never warn.
+	 * @param logger                The logger to warn to
+	 */
+	public AllocationTracker(long warningThresholdBytes, @Nonnull Logger logger) {
+		this.warningThresholdBytes = warningThresholdBytes;
+		this.logger = logger;
+
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean sunBean = null;
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			sunBean = (com.sun.management.ThreadMXBean) bean;
+			if (sunBean.isThreadAllocatedMemorySupported() && !sunBean.isThreadAllocatedMemoryEnabled()) {
+				sunBean.setThreadAllocatedMemoryEnabled(true);
+			}
+			if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled()) {
+				sunBean = null;
+			}
+		}
+		this.threadBean = sunBean;
+	}
+
+	/**
+	 * Checks whether this VM can measure the allocations of a thread
+	 *
+	 * @return True if the allocations are measured
+	 */
+	public boolean isSupported() {
+		return threadBean != null;
+	}
+
+	/**
+	 * Returns the bytes the current thread allocated so far
+	 *
+	 * @return The allocated bytes or 0 if not {@link #isSupported() supported}
+	 */
+	public long currentThreadAllocatedBytes() {
+		if (threadBean == null) {
+			return 0;
+		}
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Accounts an execution
+	 *
+	 * @param node  The node that handled the command
+	 * @param bytes The bytes allocated while executing it
+	 */
+	public void record(@Nonnull AbstractCommandNode node, long bytes) {
+		if (threadBean == null || bytes < 0) {
+			return;
+		}
+		nodes.computeIfAbsent(node, added -> new NodeAllocations(added.getPath())).record(bytes);
+
+		if (warningThresholdBytes > 0 && bytes > warningThresholdBytes) {
+			logger.warning(String.format("Command '%s' allocated %s (threshold %s)",
+					node.getPath(), formatBytes(bytes), formatBytes(warningThresholdBytes)));
+		}
+	}
+
+	/**
+	 * Returns the nodes that allocated the most in total
+	 *
+	 * @param limit The maximum amount of nodes
+	 *
+	 * @return The statistics of the nodes, the biggest allocator first
+	 */
+	@Nonnull
+	public List<AllocationStatistics> getTopAllocators(int limit) {
+		List<AllocationStatistics> statistics = new ArrayList<>();
+		for (NodeAllocations allocations : nodes.values()) {
+			if (allocations.executions.get() > 0) {
+				statistics.add(allocations.snapshot());
+			}
+		}
+		statistics.sort(Comparator.comparingLong(AllocationStatistics::getTotalBytes).reversed());
+		return statistics.subList(0, Math.min(limit, statistics.size()));
+	}
+
+	/**
+	 * Forgets everything measured so far
+	 */
+	public void reset() {
+		nodes.clear();
+	}
+
+	/**
+	 * @param bytes The amount of bytes
+	 *
+	 * @return The bytes in a human readable form
+	 */
+	static String formatBytes(long bytes) {
+		if (bytes < 1024) {
+			return bytes + " B";
+		}
+		int unit = (63 - Long.numberOfLeadingZeros(bytes)) / 10;
+		return String.format("%.1f %siB", bytes / (double) (1L << (unit * 10)), "KMGTPE".charAt(unit - 1));
+	}
+
+	/**
+	 * The allocations of one node
+	 */
+	private static class NodeAllocations {
+		private final String path;
+		private final AtomicLong executions = new AtomicLong();
+		private final AtomicLong totalBytes = new AtomicLong();
+		private final AtomicLong maxBytes = new AtomicLong();
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+		/**
+		 * @param path The path of the node
+		 */
+		NodeAllocations(String path) {
+			this.path = path;
+		}
+
+		/**
+		 * @param bytes The bytes allocated by one execution
+		 */
+		void record(long bytes) {
+			executions.incrementAndGet();
+			totalBytes.addAndGet(bytes);
+			maxBytes.accumulateAndGet(bytes, Math::max);
+			buckets.incrementAndGet(bytes == 0 ? 0 : 64 - Long.numberOfLeadingZeros(bytes) - 1);
+		}
+
+		/**
+		 * @return A snapshot of the allocations
+		 */
+		AllocationStatistics snapshot() {
+			long[] counts = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] = buckets.get(i);
+			}
+			return new AllocationStatistics(path, executions.get(), totalBytes.get(), maxBytes.get(), counts);
+		}
+	}
+
+	/**
+	 * A snapshot of the allocations of one node
+	 */
+	public static class AllocationStatistics {
+		private final String path;
+		private final long executions;
+		private final long totalBytes;
+		private final long maxBytes;
+		private final long[] buckets;
+
+		/**
+		 * @param path       The path of the node
+		 * @param executions The amount of measured executions
+		 * @param totalBytes The bytes allocated by all of them
+		 * @param maxBytes   The most bytes a single execution allocated
+		 * @param buckets    The amount of executions per power of two
+		 */
+		private AllocationStatistics(String path, long executions, long totalBytes, long maxBytes, long[] buckets) {
+			this.path = path;
+			this.executions = executions;
+			this.totalBytes = totalBytes;
+			this.maxBytes = maxBytes;
+			this.buckets = buckets;
+		}
+
+		/**
+		 * @return The path of the node
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * @return The amount of measured executions
+		 */
+		public long getExecutions() {
+			return executions;
+		}
+
+		/**
+		 * @return The bytes allocated by all executions
+		 */
+		public long getTotalBytes() {
+			return totalBytes;
+		}
+
+		/**
+		 * @return The most bytes a single execution allocated
+		 */
+		public long getMaxBytes() {
+			return maxBytes;
+		}
+
+		/**
+		 * Returns an upper bound for the bytes the given part of the executions stayed below
+		 *
+		 * @param percentile The percentile, between 0 and 1
+		 *
+		 * @return The upper bound, at most {@link #getMaxBytes()}
+		 */
+		public long getPercentile(double percentile) {
+			long wanted = (long) Math.ceil(percentile * executions);
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+				if (seen >= wanted && seen > 0) {
+					long upperBound = i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+					return Math.min(upperBound, maxBytes);
+				}
+			}
+			return maxBytes;
+		}
+
+		@Override
+		public String toString() {
+			return path +
+					": executions=" + executions +
+					", total=" + formatBytes(totalBytes) +
+					", average=" + formatBytes(executions == 0 ? 0 : totalBytes / executions) +
+					", p50=" + formatBytes(getPercentile(0.5)) +
+					", p99=" + formatBytes(getPercentile(0.99)) +
+					", max=" + formatBytes(maxBytes);
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package me.ialistannen.bukkitutil.commandsystem.metrics;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations with fixed buckets. Observing doesn't allocate.
+ */
+class Histogram {
+
+	/**
+	 * The upper bounds of the buckets in nanoseconds, from 50 microseconds to 1 second
+	 */
+	private static final long[] BOUNDS = {
+			TimeUnit.MICROSECONDS.toNanos(50),
+			TimeUnit.MICROSECONDS.toNanos(100),
+			TimeUnit.MICROSECONDS.toNanos(250),
+			TimeUnit.MICROSECONDS.toNanos(500),
+			TimeUnit.MILLISECONDS.toNanos(1),
+			TimeUnit.MICROSECONDS.toNanos(2500),
+			TimeUnit.MILLISECONDS.toNanos(5),
+			TimeUnit.MILLISECONDS.toNanos(10),
+			TimeUnit.MILLISECONDS.toNanos(25),
+			TimeUnit.MILLISECONDS.toNanos(50),
+			TimeUnit.MILLISECONDS.toNanos(100),
+			TimeUnit.MILLISECONDS.toNanos(250),
+			TimeUnit.SECONDS.toNanos(1)
+	};
+
+	private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+	private final LongAdder sumNanos = new LongAdder();
+
+	/**
+	 * Creates an empty histogram
+	 */
+	Histogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @param nanos The observed duration in nanoseconds
+	 */
+	void observe(long nanos) {
+		int bucket = 0;
+		while (bucket < BOUNDS.length && nanos > BOUNDS[bucket]) {
+			bucket++;
+		}
+		buckets[bucket].increment();
+		sumNanos.add(nanos);
+	}
+
+	/**
+	 * Writes the histogram in the Prometheus text format
+	 *
+	 * @param out    The builder to write to
+	 * @param name   The name of the metric
+	 * @param labels Additional labels, formatted as {@code key="value",}. May be empty.
+	 */
+	void write(@Nonnull StringBuilder out, @Nonnull String name, @Nonnull String labels) {
+		long cumulative = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			cumulative += buckets[i].sum();
+			String bound = i < BOUNDS.length ? Double.toString(BOUNDS[i] / 1e9) : "+Inf";
+			out.append(name).append("_bucket{").append(labels).append("le=\"").append(bound).append("\"} ")
+					.append(cumulative).append('\n');
+		}
+		String plainLabels = labels.isEmpty() ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+		out.append(name).append("_sum").append(plainLabels).append(' ').append(sumNanos.sum() / 1e9).append('\n');
+		out.append(name).append("_count").append(plainLabels).append(' ').append(cumulative).append('\n');
+	}
+}
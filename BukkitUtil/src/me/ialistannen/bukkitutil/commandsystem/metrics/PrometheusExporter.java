@@ -0,0 +1,263 @@
+package me.ialistannen.bukkitutil.commandsystem.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import me.ialistannen.bukkitutil.commandsystem.base.AbstractCommandNode;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandMetrics;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandResultType;
+import me.ialistannen.bukkitutil.commandsystem.base.OrdinalTable;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Collects the metrics of the command system and serves them in the Prometheus text format.
+ * <p>
+ * Every counter is a {@link LongAdder}, the ones for the nodes live in an {@link OrdinalTable}. So recording a
+ * measurement doesn't allocate, except for the first dispatch to a node.
+ * <p>
+ * The nodes are labelled with their {@link AbstractCommandNode#getPath() path}, as the base key of e.g. the help
+ * command is the same under every top level command. Nodes with the same path, like the ones of a replaced tree,
+ * share their counters, so a label is never written twice.
+ * <p>
+ * Use {@link #start(int)} to serve them under {@code /metrics}, or {@link #write(StringBuilder)} to export them
+ * yourself.
+ */
+@SuppressWarnings("WeakerAccess")
+public class PrometheusExporter implements CommandMetrics, AutoCloseable {
+
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	private static final CommandResultType[] RESULTS = CommandResultType.values();
+	private static final Cache[] CACHES = Cache.values();
+
+	private final OrdinalTable<NodeCounters> nodes = new OrdinalTable<>();
+	// the same counters as in the nodes, once per label
+	private final Map<String, NodeCounters> byLabel = new ConcurrentSkipListMap<>();
+	// kept, so a dispatch doesn't allocate a new lambda every time
+	private final Function<AbstractCommandNode, NodeCounters> newCounters = node ->
+			byLabel.computeIfAbsent(escape(node.getPath()), NodeCounters::new);
+
+	private final Histogram dispatchLatency = new Histogram();
+	private final Histogram tabCompleteLatency = new Histogram();
+	private final LongAdder tabCompletions = new LongAdder();
+	private final LongAdder tabCompletionCandidates = new LongAdder();
+	private final LongAdder tabCompletionsAllPlayers = new LongAdder();
+	private final Histogram helpRenderLatency = new Histogram();
+	private final LongAdder[] cacheHits = new LongAdder[CACHES.length];
+	private final LongAdder[] cacheMisses = new LongAdder[CACHES.length];
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * Creates an exporter with all metrics at 0. Not serving them yet.
+	 */
+	public PrometheusExporter() {
+		for (int i = 0; i < CACHES.length; i++) {
+			cacheHits[i] = new LongAdder();
+			cacheMisses[i] = new LongAdder();
+		}
+	}
+
+	@Override
+	public void onDispatch(@Nonnull AbstractCommandNode node, @Nonnull CommandResultType result, long nanos) {
+		countersFor(node).results[result.ordinal()].increment();
+		dispatchLatency.observe(nanos);
+	}
+
+	@Override
+	public void onTabComplete(int completions, long nanos) {
+		tabCompletions.increment();
+		if (completions < 0) {
+			tabCompletionsAllPlayers.increment();
+		} else {
+			tabCompletionCandidates.add(completions);
+		}
+		tabCompleteLatency.observe(nanos);
+	}
+
+	@Override
+	public void onCacheAccess(@Nonnull Cache cache, boolean hit) {
+		(hit ? cacheHits : cacheMisses)[cache.ordinal()].increment();
+	}
+
+	@Override
+	public void onHelpRendered(long nanos) {
+		helpRenderLatency.observe(nanos);
+	}
+
+	/**
+	 * Serves the metrics on the loopback address
+	 *
+	 * @param port The port to listen on
+	 *
+	 * @throws IOException if the server couldn't be started
+	 * @see #start(InetSocketAddress)
+	 */
+	public void start(int port) throws IOException {
+		start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+
+	/**
+	 * Serves the metrics under {@code /metrics}, using its own daemon thread
+	 *
+	 * @param address The address to listen on
+	 *
+	 * @throws IOException if the server couldn't be started
+	 * @throws IllegalStateException if it is already started
+	 */
+	public synchronized void start(@Nonnull InetSocketAddress address) throws IOException {
+		if (server != null) {
+			throw new IllegalStateException("Already started");
+		}
+		executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "CommandSystem-Metrics");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server = HttpServer.create(address, 0);
+		server.createContext("/metrics", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Stops serving the metrics. The metrics are kept.
+	 */
+	@Override
+	public synchronized void close() {
+		if (server == null) {
+			return;
+		}
+		server.stop(0);
+		executor.shutdownNow();
+		server = null;
+		executor = null;
+	}
+
+	/**
+	 * Writes all metrics in the Prometheus text format
+	 *
+	 * @param out The builder to write to
+	 */
+	public void write(@Nonnull StringBuilder out) {
+		out.append("# HELP command_dispatch_total Executed commands by node and result\n");
+		out.append("# TYPE command_dispatch_total counter\n");
+		for (NodeCounters counters : byLabel.values()) {
+			for (CommandResultType result : RESULTS) {
+				long count = counters.results[result.ordinal()].sum();
+				if (count == 0) {
+					continue;
+				}
+				out.append("command_dispatch_total{node=\"").append(counters.label)
+						.append("\",result=\"").append(result.name().toLowerCase(Locale.ROOT)).append("\"} ")
+						.append(count).append('\n');
+			}
+		}
+
+		out.append("# HELP command_dispatch_duration_seconds Time to find and execute a command\n");
+		out.append("# TYPE command_dispatch_duration_seconds histogram\n");
+		dispatchLatency.write(out, "command_dispatch_duration_seconds", "");
+
+		out.append("# HELP command_tab_completions_total Answered tab completions\n");
+		out.append("# TYPE command_tab_completions_total counter\n");
+		out.append("command_tab_completions_total ").append(tabCompletions.sum()).append('\n');
+		out.append("# HELP command_tab_completion_candidates_total Proposed completions\n");
+		out.append("# TYPE command_tab_completion_candidates_total counter\n");
+		out.append("command_tab_completion_candidates_total ").append(tabCompletionCandidates.sum()).append('\n');
+		out.append("# HELP command_tab_completions_all_players_total Completions proposing all players\n");
+		out.append("# TYPE command_tab_completions_all_players_total counter\n");
+		out.append("command_tab_completions_all_players_total ").append(tabCompletionsAllPlayers.sum()).append('\n');
+		out.append("# HELP command_tab_completion_duration_seconds Time to answer a tab completion\n");
+		out.append("# TYPE command_tab_completion_duration_seconds histogram\n");
+		tabCompleteLatency.write(out, "command_tab_completion_duration_seconds", "");
+
+		out.append("# HELP command_cache_requests_total Cache lookups by cache and outcome\n");
+		out.append("# TYPE command_cache_requests_total counter\n");
+		for (Cache cache : CACHES) {
+			String name = cache.name().toLowerCase(Locale.ROOT);
+			out.append("command_cache_requests_total{cache=\"").append(name).append("\",outcome=\"hit\"} ")
+					.append(cacheHits[cache.ordinal()].sum()).append('\n');
+			out.append("command_cache_requests_total{cache=\"").append(name).append("\",outcome=\"miss\"} ")
+					.append(cacheMisses[cache.ordinal()].sum()).append('\n');
+		}
+
+		out.append("# HELP command_help_render_duration_seconds Time to render and send the help\n");
+		out.append("# TYPE command_help_render_duration_seconds histogram\n");
+		helpRenderLatency.write(out, "command_help_render_duration_seconds", "");
+	}
+
+	/**
+	 * Answers a scrape
+	 *
+	 * @param exchange The exchange
+	 *
+	 * @throws IOException if writing fails
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			StringBuilder builder = new StringBuilder(4096);
+			write(builder);
+			byte[] body = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * @param node The node
+	 *
+	 * @return The counters of the node, created if this is its first dispatch
+	 */
+	private NodeCounters countersFor(AbstractCommandNode node) {
+		return nodes.computeIfAbsent(node, newCounters);
+	}
+
+	/**
+	 * @param value The label value
+	 *
+	 * @return The value escaped for the text format
+	 */
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	/**
+	 * The counters of one node
+	 */
+	private static class NodeCounters {
+		private final String label;
+		private final LongAdder[] results = new LongAdder[RESULTS.length];
+
+		/**
+		 * @param label The escaped label of the node
+		 */
+		NodeCounters(String label) {
+			this.label = label;
+			for (int i = 0; i < results.length; i++) {
+				results[i] = new LongAdder();
+			}
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package me.ialistannen.bukkitutil.commandsystem.replay;
+
+import me.ialistannen.bukkitutil.commandsystem.base.CommandResultType;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of a replayed workload
+ */
+@SuppressWarnings("WeakerAccess")
+public class ReplayReport {
+
+	private final long durationNanos;
+	private final Latencies executions;
+	private final Latencies tabCompletions;
+	private final Map<CommandResultType, Long> results;
+
+	/**
+	 * @param durationNanos  The time the whole replay took
+	 * @param executions     The latencies of the executions
+	 * @param tabCompletions The latencies of the tab completions
+	 * @param results        The amount of executions per result
+	 */
+	ReplayReport(long durationNanos, Latencies executions, Latencies tabCompletions,
+	             Map<CommandResultType, Long> results) {
+		this.durationNanos = durationNanos;
+		this.executions = executions.sorted();
+		this.tabCompletions = tabCompletions.sorted();
+		this.results = Collections.unmodifiableMap(results);
+	}
+
+	/**
+	 * @return The time the whole replay took, in nanoseconds
+	 */
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	/**
+	 * @return The latencies of the executed commands
+	 */
+	@Nonnull
+	public Latencies getExecutions() {
+		return executions;
+	}
+
+	/**
+	 * @return The latencies of the tab completions
+	 */
+	@Nonnull
+	public Latencies getTabCompletions() {
+		return tabCompletions;
+	}
+
+	/**
+	 * @return The amount of executions per result. Unmodifiable.
+	 */
+	@Nonnull
+	public Map<CommandResultType, Long> getResults() {
+		return results;
+	}
+
+	/**
+	 * @return The executed commands and tab completions per second
+	 */
+	public double getThroughput() {
+		if (durationNanos == 0) {
+			return 0;
+		}
+		return (executions.getCount() + tabCompletions.getCount()) / (durationNanos / 1e9);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Replayed %d commands and %d tab completions in %d ms (%.1f ops/s)%n"
+						+ "  execute:      %s%n"
+						+ "  tab complete: %s%n"
+						+ "  results:      %s",
+				executions.getCount(), tabCompletions.getCount(), TimeUnit.NANOSECONDS.toMillis(durationNanos),
+				getThroughput(), executions, tabCompletions, results);
+	}
+
+	/**
+	 * The measured latencies of one kind of operation
+	 */
+	public static class Latencies {
+		private long[] nanos = new long[64];
+		private int count;
+
+		/**
+		 * @param latency The latency of one operation in nanoseconds
+		 */
+		void add(long latency) {
+			if (count == nanos.length) {
+				nanos = Arrays.copyOf(nanos, count * 2);
+			}
+			nanos[count++] = latency;
+		}
+
+		/**
+		 * @return This, with the latencies sorted
+		 */
+		Latencies sorted() {
+			nanos = Arrays.copyOf(nanos, count);
+			Arrays.sort(nanos);
+			return this;
+		}
+
+		/**
+		 * @return The amount of operations
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the latency the given part of the operations stayed below
+		 *
+		 * @param percentile The percentile, between 0 and 1
+		 *
+		 * @return The latency in nanoseconds. 0 if there were no operations.
+		 */
+		public long getPercentile(double percentile) {
+			if (count == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile * count) - 1;
+			return nanos[Math.max(0, Math.min(count - 1, index))];
+		}
+
+		@Override
+		public String toString() {
+			return String.format("p50=%.3f ms, p90=%.3f ms, p99=%.3f ms, max=%.3f ms",
+					getPercentile(0.5) / 1e6, getPercentile(0.9) / 1e6, getPercentile(0.99) / 1e6,
+					getPercentile(1) / 1e6);
+		}
+	}
+}
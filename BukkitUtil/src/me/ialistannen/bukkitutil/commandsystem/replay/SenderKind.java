@@ -0,0 +1,41 @@
+package me.ialistannen.bukkitutil.commandsystem.replay;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.entity.Player;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The kind of a recorded sender. Commands often only accept one kind.
+ */
+public enum SenderKind {
+	/**
+	 * A player
+	 */
+	PLAYER,
+	/**
+	 * The console
+	 */
+	CONSOLE,
+	/**
+	 * Anything else, like command blocks
+	 */
+	OTHER;
+
+	/**
+	 * @param sender The sender
+	 *
+	 * @return The kind of the sender
+	 */
+	@Nonnull
+	public static SenderKind of(@Nonnull CommandSender sender) {
+		if (sender instanceof Player) {
+			return PLAYER;
+		}
+		if (sender instanceof ConsoleCommandSender) {
+			return CONSOLE;
+		}
+		return OTHER;
+	}
+}
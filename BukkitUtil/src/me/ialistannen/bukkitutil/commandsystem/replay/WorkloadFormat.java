@@ -0,0 +1,76 @@
+package me.ialistannen.bukkitutil.commandsystem.replay;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The format of a recorded workload. The whole file is GZIP compressed.
+ * <p>
+ * <b>Header:</b> {@code int magic, short version, long startTime}
+ * <p>
+ * <b>Permission set:</b> {@code byte 0, varint id, byte flags (1 = op), varint count, utf... permissions}. Written
+ * once, before the first event using it.
+ * <p>
+ * <b>Event:</b> {@code byte type (1 = execute, 2 = tab complete), varlong (time - previous time), byte senderKind,
+ * varint permissionSet, varint argCount, utf... args}
+ */
+class WorkloadFormat {
+
+	static final int MAGIC = 0x43575244; // "CWRD"
+	static final short VERSION = 1;
+
+	static final byte TAG_PERMISSION_SET = 0;
+	static final byte TAG_EXECUTE = 1;
+	static final byte TAG_TAB_COMPLETE = 2;
+
+	static final int FLAG_OP = 1;
+
+	/**
+	 * @param out   The output to write to
+	 * @param value The value to write. Must not be negative.
+	 *
+	 * @throws IOException if writing fails
+	 */
+	static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * @param in The input to read from
+	 *
+	 * @return The read value
+	 *
+	 * @throws IOException if reading fails or the value is malformed
+	 */
+	static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte current = in.readByte();
+			value |= (long) (current & 0x7F) << shift;
+			if ((current & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varlong");
+	}
+
+	/**
+	 * @param in The input to read from
+	 *
+	 * @return The read value
+	 *
+	 * @throws IOException if reading fails or the value doesn't fit in an int
+	 */
+	static int readVarInt(DataInput in) throws IOException {
+		long value = readVarLong(in);
+		if (value < 0 || value > Integer.MAX_VALUE) {
+			throw new IOException("Value out of range: " + value);
+		}
+		return (int) value;
+	}
+}
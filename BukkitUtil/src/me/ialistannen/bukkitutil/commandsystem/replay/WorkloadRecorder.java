@@ -0,0 +1,262 @@
+package me.ialistannen.bukkitutil.commandsystem.replay;
+
+import me.ialistannen.bukkitutil.commandsystem.base.AbstractCommandNode;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTree;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTree.InvalidationListener;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTree.InvalidationReason;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTreeHolder;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTreeHolder.SwapListener;
+import org.bukkit.command.CommandSender;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records the commands and tab completions reaching the tree, so they can be replayed by a {@link WorkloadReplayer}.
+ * <p>
+ * Only the kind of the sender and which of the {@link AbstractCommandNode#getRequiredPermission() required
+ * permissions} of the tree he has are kept. Every distinct set of permissions is written once.
+ * <p>
+ * Set it with {@code setRecorder} on the default executor and tab completer. Close it to flush the file and stop
+ * listening to the tree.
+ */
+@SuppressWarnings("WeakerAccess")
+public class WorkloadRecorder implements AutoCloseable {
+
+	private final CommandTreeHolder holder;
+	private final Logger logger;
+	private final DataOutputStream out;
+
+	private final InvalidationListener invalidationListener = new InvalidationListener() {
+		@Override
+		public void onPreInvalidate(InvalidationReason reason, AbstractCommandNode parent, AbstractCommandNode child) {
+			// the permissions are collected again afterwards
+		}
+
+		@Override
+		public void onPostInvalidate(InvalidationReason reason, AbstractCommandNode parent, AbstractCommandNode child) {
+			synchronized (WorkloadRecorder.this) {
+				relevantPermissions = null;
+			}
+		}
+	};
+	private final SwapListener swapListener = (oldTree, newTree) -> follow(newTree);
+
+	private final Map<PermissionSet, Integer> permissionSets = new HashMap<>();
+	private CommandTree tree;
+	private List<String> relevantPermissions;
+	private long lastTimestamp;
+	private boolean failed;
+
+	/**
+	 * @param tree   The tree whose permissions to record
+	 * @param file   The file to write to. Overwritten.
+	 * @param logger The logger to report write errors to
+	 *
+	 * @throws IOException if the file couldn't be created
+	 */
+	public WorkloadRecorder(@Nonnull CommandTree tree, @Nonnull Path file, @Nonnull Logger logger)
+			throws IOException {
+		this(new CommandTreeHolder(tree), file, logger);
+	}
+
+	/**
+	 * Records the permissions of the tree of the holder. Replacing it there replaces it for this recorder too.
+	 *
+	 * @param holder The holder of the tree whose permissions to record
+	 * @param file   The file to write to. Overwritten.
+	 * @param logger The logger to report write errors to
+	 *
+	 * @throws IOException if the file couldn't be created
+	 */
+	public WorkloadRecorder(@Nonnull CommandTreeHolder holder, @Nonnull Path file, @Nonnull Logger logger)
+			throws IOException {
+		this.holder = holder;
+		this.logger = logger;
+		this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file))));
+
+		lastTimestamp = System.currentTimeMillis();
+		out.writeInt(WorkloadFormat.MAGIC);
+		out.writeShort(WorkloadFormat.VERSION);
+		out.writeLong(lastTimestamp);
+
+		// listen first, so a swap in between isn't missed
+		holder.addSwapListener(swapListener);
+		follow(holder.getTree());
+	}
+
+	/**
+	 * Moves the invalidation listener to the tree and collects its permissions again
+	 *
+	 * @param newTree The tree to record the permissions of
+	 */
+	private synchronized void follow(CommandTree newTree) {
+		if (failed || newTree == tree) {
+			return;
+		}
+		if (tree != null) {
+			tree.removeInvalidationListener(invalidationListener);
+		}
+		tree = newTree;
+		tree.addInvalidationListener(invalidationListener);
+		relevantPermissions = null;
+	}
+
+	/**
+	 * Records an executed command
+	 *
+	 * @param sender The sender of the command
+	 * @param args   The arguments the tree is called with
+	 */
+	public void recordExecution(@Nonnull CommandSender sender, @Nonnull String[] args) {
+		record(WorkloadFormat.TAG_EXECUTE, sender, args);
+	}
+
+	/**
+	 * Records a tab completion
+	 *
+	 * @param sender The sender completing
+	 * @param args   The arguments the tree is called with
+	 */
+	public void recordTabComplete(@Nonnull CommandSender sender, @Nonnull String[] args) {
+		record(WorkloadFormat.TAG_TAB_COMPLETE, sender, args);
+	}
+
+	/**
+	 * Stops listening to the tree, flushes and closes the file
+	 *
+	 * @throws IOException if writing fails
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		failed = true;
+		holder.removeSwapListener(swapListener);
+		tree.removeInvalidationListener(invalidationListener);
+		out.close();
+	}
+
+	/**
+	 * Writes an event
+	 *
+	 * @param type   The type of the event
+	 * @param sender The sender
+	 * @param args   The arguments
+	 */
+	private synchronized void record(byte type, CommandSender sender, String[] args) {
+		if (failed) {
+			return;
+		}
+		try {
+			int permissionSet = permissionSetOf(sender);
+			long now = System.currentTimeMillis();
+
+			out.writeByte(type);
+			WorkloadFormat.writeVarLong(out, Math.max(0, now - lastTimestamp));
+			out.writeByte(SenderKind.of(sender).ordinal());
+			WorkloadFormat.writeVarLong(out, permissionSet);
+			WorkloadFormat.writeVarLong(out, args.length);
+			for (String arg : args) {
+				out.writeUTF(arg);
+			}
+			lastTimestamp = Math.max(lastTimestamp, now);
+		} catch (IOException e) {
+			failed = true;
+			logger.log(Level.WARNING, "Couldn't record the workload, stopping", e);
+		}
+	}
+
+	/**
+	 * Returns the id of the permission set of the sender, writing it if it is new
+	 *
+	 * @param sender The sender
+	 *
+	 * @return The id of his permission set
+	 *
+	 * @throws IOException if writing fails
+	 */
+	private int permissionSetOf(CommandSender sender) throws IOException {
+		if (relevantPermissions == null) {
+			Set<String> permissions = new LinkedHashSet<>();
+			for (AbstractCommandNode node : tree.getAllChildren()) {
+				String permission = node.getRequiredPermission();
+				if (permission != null && !permission.isEmpty()) {
+					permissions.add(permission);
+				}
+			}
+			relevantPermissions = new ArrayList<>(permissions);
+		}
+
+		List<String> granted = new ArrayList<>();
+		for (String permission : relevantPermissions) {
+			if (sender.hasPermission(permission)) {
+				granted.add(permission);
+			}
+		}
+		Collections.sort(granted);
+		PermissionSet set = new PermissionSet(granted, sender.isOp());
+
+		Integer id = permissionSets.get(set);
+		if (id != null) {
+			return id;
+		}
+		id = permissionSets.size();
+		permissionSets.put(set, id);
+
+		out.writeByte(WorkloadFormat.TAG_PERMISSION_SET);
+		WorkloadFormat.writeVarLong(out, id);
+		out.writeByte(set.op ? WorkloadFormat.FLAG_OP : 0);
+		WorkloadFormat.writeVarLong(out, granted.size());
+		for (String permission : granted) {
+			out.writeUTF(permission);
+		}
+		return id;
+	}
+
+	/**
+	 * The granted permissions of a sender
+	 */
+	private static class PermissionSet {
+		private final List<String> permissions;
+		private final boolean op;
+
+		/**
+		 * @param permissions The granted permissions, sorted
+		 * @param op          Whether the sender is an operator
+		 */
+		PermissionSet(List<String> permissions, boolean op) {
+			this.permissions = permissions;
+			this.op = op;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			PermissionSet that = (PermissionSet) o;
+			return op == that.op && permissions.equals(that.permissions);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * permissions.hashCode() + (op ? 1 : 0);
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package me.ialistannen.bukkitutil.commandsystem.replay;
+
+import me.ialistannen.bukkitutil.commandsystem.base.CommandResultType;
+import me.ialistannen.bukkitutil.commandsystem.base.CommandTree;
+import me.ialistannen.bukkitutil.commandsystem.testkit.FakeSender;
+import org.bukkit.command.CommandSender;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Drives a {@link CommandTree} with a workload recorded by a {@link WorkloadRecorder}.
+ * <p>
+ * Needs no server. Every recorded permission set gets its own {@link FakeSender}, which swallows all messages. The
+ * tree must contain the same commands as the recorded one, and the commands must work without a server too.
+ */
+@SuppressWarnings("WeakerAccess")
+public class WorkloadReplayer {
+
+	private static final SenderKind[] KINDS = SenderKind.values();
+
+	private final CommandTree tree;
+
+	/**
+	 * @param tree The tree to replay the workload against
+	 */
+	public WorkloadReplayer(@Nonnull CommandTree tree) {
+		this.tree = tree;
+	}
+
+	/**
+	 * Replays a recorded workload
+	 *
+	 * @param file  The recorded file
+	 * @param speed The speed relative to the recording. 2 replays twice as fast, 0 or less as fast as possible.
+	 *
+	 * @return The report of the replay
+	 *
+	 * @throws IOException if the file can't be read or is no recorded workload
+	 */
+	@Nonnull
+	public ReplayReport replay(@Nonnull Path file, double speed) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(Files.newInputStream(file))))) {
+
+			if (in.readInt() != WorkloadFormat.MAGIC) {
+				throw new IOException("Not a recorded workload: " + file);
+			}
+			short version = in.readShort();
+			if (version != WorkloadFormat.VERSION) {
+				throw new IOException("Unsupported version " + version);
+			}
+			in.readLong();
+
+			return replay(in, speed);
+		}
+	}
+
+	/**
+	 * @param in    The input, positioned after the header
+	 * @param speed The speed relative to the recording
+	 *
+	 * @return The report
+	 *
+	 * @throws IOException if reading fails
+	 */
+	private ReplayReport replay(DataInputStream in, double speed) throws IOException {
+		Map<Integer, PermissionSet> permissionSets = new HashMap<>();
+		Map<Long, CommandSender> senders = new HashMap<>();
+		ReplayReport.Latencies executions = new ReplayReport.Latencies();
+		ReplayReport.Latencies completions = new ReplayReport.Latencies();
+		Map<CommandResultType, Long> results = new EnumMap<>(CommandResultType.class);
+
+		long start = System.nanoTime();
+		long recordedTime = 0;
+
+		while (true) {
+			byte tag;
+			try {
+				tag = in.readByte();
+			} catch (EOFException e) {
+				break;
+			}
+
+			if (tag == WorkloadFormat.TAG_PERMISSION_SET) {
+				int id = WorkloadFormat.readVarInt(in);
+				boolean op = (in.readByte() & WorkloadFormat.FLAG_OP) != 0;
+				int count = WorkloadFormat.readVarInt(in);
+				Set<String> permissions = new HashSet<>();
+				for (int i = 0; i < count; i++) {
+					permissions.add(in.readUTF());
+				}
+				permissionSets.put(id, new PermissionSet(permissions, op));
+				continue;
+			}
+			if (tag != WorkloadFormat.TAG_EXECUTE && tag != WorkloadFormat.TAG_TAB_COMPLETE) {
+				throw new IOException("Unknown record type " + tag);
+			}
+
+			recordedTime += WorkloadFormat.readVarLong(in);
+			int kindOrdinal = in.readUnsignedByte();
+			int permissionSetId = WorkloadFormat.readVarInt(in);
+			String[] args = new String[WorkloadFormat.readVarInt(in)];
+			for (int i = 0; i < args.length; i++) {
+				args[i] = in.readUTF();
+			}
+			if (kindOrdinal >= KINDS.length || !permissionSets.containsKey(permissionSetId)) {
+				throw new IOException("Corrupt event at " + recordedTime + " ms");
+			}
+			SenderKind kind = KINDS[kindOrdinal];
+
+			CommandSender sender = senders.computeIfAbsent(((long) permissionSetId << 8) | kindOrdinal, key -> {
+				PermissionSet set = permissionSets.get(permissionSetId);
+				return createSender(kind, permissionSetId, set).getSender();
+			});
+
+			if (speed > 0) {
+				waitUntil(start + (long) (TimeUnit.MILLISECONDS.toNanos(recordedTime) / speed));
+			}
+
+			long before = System.nanoTime();
+			if (tag == WorkloadFormat.TAG_EXECUTE) {
+				CommandResultType result = tree.executeCommand(sender, args).getResultType();
+				executions.add(System.nanoTime() - before);
+				results.merge(result, 1L, Long::sum);
+			} else {
+				tree.doTabComplete(sender, args.length == 0 ? "" : args[0], args);
+				completions.add(System.nanoTime() - before);
+			}
+		}
+
+		return new ReplayReport(System.nanoTime() - start, executions, completions, results);
+	}
+
+	/**
+	 * Creates the sender for a recorded permission set. He swallows all messages.
+	 *
+	 * @param kind The kind of the sender
+	 * @param id   The id of the permission set. Part of his name.
+	 * @param set  The permission set
+	 *
+	 * @return The created sender
+	 */
+	private static FakeSender createSender(SenderKind kind, int id, PermissionSet set) {
+		String name = "replay-" + kind.name().toLowerCase() + "-" + id;
+		FakeSender sender;
+		switch (kind) {
+			case PLAYER:
+				sender = FakeSender.player(name);
+				break;
+			case CONSOLE:
+				sender = FakeSender.console();
+				break;
+			default:
+				sender = FakeSender.other(name);
+		}
+		sender.setOp(set.op);
+		sender.grant(set.permissions.toArray(new String[set.permissions.size()]));
+		sender.setRecordMessages(false);
+		return sender;
+	}
+
+	/**
+	 * @param deadline The {@link System#nanoTime()} to wait for
+	 */
+	private static void waitUntil(long deadline) {
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remaining);
+		}
+	}
+
+	/**
+	 * A recorded permission set
+	 */
+	private static class PermissionSet {
+		private final Set<String> permissions;
+		private final boolean op;
+
+		/**
+		 * @param permissions The granted permissions
+		 * @param op          Whether the sender was an operator
+		 */
+		PermissionSet(Set<String> permissions, boolean op) {
+			this.permissions = permissions;
+			this.op = op;
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package me.ialistannen.bukkitutil.commandsystem.testkit;
+
+import org.bukkit.permissions.Permissible;
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionAttachment;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.bukkit.plugin.Plugin;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory {@link Permissible}.
+ * <p>
+ * Permissions set directly win over the ones of attachments. Permissions that aren't set anywhere behave like on a
+ * server without a permission plugin: Operators have them, unless the {@link Permission} says otherwise.
+ */
+public class FakePermissible implements Permissible {
+
+	private final Map<String, Boolean> permissions = new LinkedHashMap<>();
+	private final List<PermissionAttachment> attachments = new ArrayList<>();
+	private boolean op;
+
+	/**
+	 * Grants permissions
+	 *
+	 * @param permissions The permissions to grant
+	 *
+	 * @return This permissible
+	 */
+	@Nonnull
+	public FakePermissible grant(@Nonnull String... permissions) {
+		for (String permission : permissions) {
+			this.permissions.put(permission.toLowerCase(), true);
+		}
+		return this;
+	}
+
+	/**
+	 * Denies permissions explicitly, even for operators
+	 *
+	 * @param permissions The permissions to deny
+	 *
+	 * @return This permissible
+	 */
+	@SuppressWarnings("unused")
+	@Nonnull
+	public FakePermissible deny(@Nonnull String... permissions) {
+		for (String permission : permissions) {
+			this.permissions.put(permission.toLowerCase(), false);
+		}
+		return this;
+	}
+
+	/**
+	 * Removes permissions, so they fall back to the default
+	 *
+	 * @param permissions The permissions to unset
+	 *
+	 * @return This permissible
+	 */
+	@SuppressWarnings("unused")
+	@Nonnull
+	public FakePermissible unset(@Nonnull String... permissions) {
+		for (String permission : permissions) {
+			this.permissions.remove(permission.toLowerCase());
+		}
+		return this;
+	}
+
+	@Override
+	public boolean isPermissionSet(String name) {
+		return lookup(name) != null;
+	}
+
+	@Override
+	public boolean isPermissionSet(Permission perm) {
+		return isPermissionSet(perm.getName());
+	}
+
+	@Override
+	public boolean hasPermission(String name) {
+		Boolean value = lookup(name);
+		return value == null ? isOp() : value;
+	}
+
+	@Override
+	public boolean hasPermission(Permission perm) {
+		Boolean value = lookup(perm.getName());
+		if (value != null) {
+			return value;
+		}
+		return perm.getDefault() == null ? isOp() : perm.getDefault().getValue(isOp());
+	}
+
+	@Override
+	public PermissionAttachment addAttachment(Plugin plugin, String name, boolean value) {
+		PermissionAttachment attachment = addAttachment(plugin);
+		attachment.setPermission(name, value);
+		return attachment;
+	}
+
+	@Override
+	public PermissionAttachment addAttachment(Plugin plugin) {
+		PermissionAttachment attachment = new PermissionAttachment(plugin, this);
+		attachments.add(attachment);
+		return attachment;
+	}
+
+	/**
+	 * The attachment never expires, there are no ticks without a server
+	 */
+	@Override
+	public PermissionAttachment addAttachment(Plugin plugin, String name, boolean value, int ticks) {
+		return addAttachment(plugin, name, value);
+	}
+
+	/**
+	 * The attachment never expires, there are no ticks without a server
+	 */
+	@Override
+	public PermissionAttachment addAttachment(Plugin plugin, int ticks) {
+		return addAttachment(plugin);
+	}
+
+	@Override
+	public void removeAttachment(PermissionAttachment attachment) {
+		attachments.remove(attachment);
+	}
+
+	@Override
+	public void recalculatePermissions() {
+		// everything is looked up live
+	}
+
+	@Override
+	public Set<PermissionAttachmentInfo> getEffectivePermissions() {
+		Set<PermissionAttachmentInfo> effective = new HashSet<>();
+		for (PermissionAttachment attachment : attachments) {
+			for (Map.Entry<String, Boolean> entry : attachment.getPermissions().entrySet()) {
+				effective.add(new PermissionAttachmentInfo(this, entry.getKey(), attachment, entry.getValue()));
+			}
+		}
+		for (Map.Entry<String, Boolean> entry : permissions.entrySet()) {
+			effective.add(new PermissionAttachmentInfo(this, entry.getKey(), null, entry.getValue()));
+		}
+		return Collections.unmodifiableSet(effective);
+	}
+
+	@Override
+	public boolean isOp() {
+		return op;
+	}
+
+	@Override
+	public void setOp(boolean value) {
+		this.op = value;
+	}
+
+	/**
+	 * @param name The name of the permission
+	 *
+	 * @return The value it is set to or null if it isn't set
+	 */
+	private Boolean lookup(String name) {
+		String key = name.toLowerCase();
+		Boolean value = permissions.get(key);
+		if (value != null) {
+			return value;
+		}
+		// the newest attachment wins
+		for (int i = attachments.size() - 1; i >= 0; i--) {
+			Map<String, Boolean> attached = attachments.get(i).getPermissions();
+			for (Map.Entry<String, Boolean> entry : attached.entrySet()) {
+				if (entry.getKey().equalsIgnoreCase(key)) {
+					return entry.getValue();
+				}
+			}
+		}
+		return null;
+	}
+}
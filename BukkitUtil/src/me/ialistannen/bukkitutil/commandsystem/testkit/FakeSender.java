@@ -0,0 +1,314 @@
+package me.ialistannen.bukkitutil.commandsystem.testkit;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.Permissible;
+import org.bukkit.permissions.ServerOperator;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * An in-memory sender, usable without a server.
+ * <p>
+ * {@link #getSender()} returns a real {@link Player}, {@link ConsoleCommandSender} or plain {@link CommandSender},
+ * which answers the permission methods from this object and records all messages. Methods it doesn't know return
+ * null, 0 or false.
+ * <p>
+ * <b>Not thread safe.</b>
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class FakeSender extends FakePermissible {
+
+	private final String name;
+	private final UUID uniqueId;
+	private final CommandSender sender;
+
+	private final List<String> messages = new ArrayList<>();
+	private boolean recordMessages = true;
+	private boolean online = true;
+	private String locale = "en_US";
+
+	/**
+	 * @param type The interface the sender implements
+	 * @param name The name of the sender
+	 */
+	private FakeSender(Class<? extends CommandSender> type, String name) {
+		this.name = name;
+		this.uniqueId = UUID.nameUUIDFromBytes(("FakeSender:" + name).getBytes(StandardCharsets.UTF_8));
+		this.sender = (CommandSender) Proxy.newProxyInstance(FakeSender.class.getClassLoader(),
+				new Class<?>[]{type}, new Handler());
+	}
+
+	/**
+	 * Creates a fake player
+	 *
+	 * @param name The name of the player
+	 *
+	 * @return The fake player. {@link #getSender()} is a {@link Player}.
+	 */
+	@Nonnull
+	public static FakeSender player(@Nonnull String name) {
+		return new FakeSender(Player.class, name);
+	}
+
+	/**
+	 * Creates a fake console. It is an operator.
+	 *
+	 * @return The fake console. {@link #getSender()} is a {@link ConsoleCommandSender}.
+	 */
+	@Nonnull
+	public static FakeSender console() {
+		FakeSender console = new FakeSender(ConsoleCommandSender.class, "CONSOLE");
+		console.setOp(true);
+		return console;
+	}
+
+	/**
+	 * Creates a sender that is neither a player nor the console, like a command block
+	 *
+	 * @param name The name of the sender
+	 *
+	 * @return The fake sender
+	 */
+	@Nonnull
+	public static FakeSender other(@Nonnull String name) {
+		return new FakeSender(CommandSender.class, name);
+	}
+
+	/**
+	 * Returns the fake sender behind a sender
+	 *
+	 * @param sender The sender
+	 *
+	 * @return The fake sender, if it was created by this class
+	 */
+	@Nonnull
+	public static Optional<FakeSender> of(@Nonnull CommandSender sender) {
+		if (!Proxy.isProxyClass(sender.getClass())) {
+			return Optional.empty();
+		}
+		InvocationHandler handler = Proxy.getInvocationHandler(sender);
+		if (handler instanceof FakeSender.Handler) {
+			return Optional.of(((Handler) handler).owner());
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * @return The sender to pass to the command system
+	 */
+	@Nonnull
+	public CommandSender getSender() {
+		return sender;
+	}
+
+	/**
+	 * @return The sender as a player
+	 *
+	 * @throws IllegalStateException if this isn't a fake player
+	 */
+	@Nonnull
+	public Player asPlayer() {
+		if (!(sender instanceof Player)) {
+			throw new IllegalStateException(name + " is no player");
+		}
+		return (Player) sender;
+	}
+
+	/**
+	 * Grants permissions
+	 *
+	 * @param permissions The permissions to grant
+	 *
+	 * @return This sender
+	 */
+	@Nonnull
+	@Override
+	public FakeSender grant(@Nonnull String... permissions) {
+		super.grant(permissions);
+		return this;
+	}
+
+	/**
+	 * @return The name of the sender
+	 */
+	@Nonnull
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The UUID of the sender. Derived from his name.
+	 */
+	@Nonnull
+	public UUID getUniqueId() {
+		return uniqueId;
+	}
+
+	/**
+	 * @return The received messages, oldest first. Unmodifiable.
+	 */
+	@Nonnull
+	public List<String> getMessages() {
+		return Collections.unmodifiableList(messages);
+	}
+
+	/**
+	 * @return The last received message, if any
+	 */
+	@Nonnull
+	public Optional<String> getLastMessage() {
+		return messages.isEmpty() ? Optional.empty() : Optional.of(messages.get(messages.size() - 1));
+	}
+
+	/**
+	 * Forgets all received messages
+	 */
+	public void clearMessages() {
+		messages.clear();
+	}
+
+	/**
+	 * @param recordMessages False to drop all messages, e.g. for load tests
+	 */
+	public void setRecordMessages(boolean recordMessages) {
+		this.recordMessages = recordMessages;
+	}
+
+	/**
+	 * @param online False to let the player appear offline
+	 */
+	public void setOnline(boolean online) {
+		this.online = online;
+	}
+
+	/**
+	 * @return The locale the client reports, like "en_US"
+	 */
+	@Nonnull
+	public String getLocale() {
+		return locale;
+	}
+
+	/**
+	 * @param locale The locale the client reports, like "de_DE"
+	 */
+	public void setLocale(@Nonnull String locale) {
+		this.locale = locale;
+	}
+
+	@Override
+	public String toString() {
+		return "FakeSender{" + name + '}';
+	}
+
+	/**
+	 * Answers the calls to the proxy
+	 */
+	private class Handler implements InvocationHandler {
+
+		/**
+		 * @return The fake sender this handler belongs to
+		 */
+		FakeSender owner() {
+			return FakeSender.this;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Class<?> declaring = method.getDeclaringClass();
+			if (declaring == Permissible.class || declaring == ServerOperator.class) {
+				try {
+					return method.invoke(FakeSender.this, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+
+			switch (method.getName()) {
+				case "sendMessage":
+					if (recordMessages) {
+						if (args[0] instanceof String[]) {
+							messages.addAll(Arrays.asList((String[]) args[0]));
+						} else {
+							messages.add((String) args[0]);
+						}
+					}
+					return null;
+				case "getName":
+				case "getDisplayName":
+				case "getPlayerListName":
+					return name;
+				case "getUniqueId":
+					return uniqueId;
+				case "getLocale":
+					return locale;
+				case "spigot":
+					return new Player.Spigot() {
+						@Override
+						public String getLocale() {
+							return locale;
+						}
+					};
+				case "isOnline":
+				case "isValid":
+					return online;
+				case "canSee":
+					return true;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return FakeSender.this.toString();
+				default:
+					return defaultValue(method.getReturnType());
+			}
+		}
+	}
+
+	/**
+	 * @param type The return type of a method
+	 *
+	 * @return The default value for the type
+	 */
+	static Object defaultValue(Class<?> type) {
+		if (!type.isPrimitive() || type == void.class) {
+			return null;
+		}
+		if (type == boolean.class) {
+			return false;
+		}
+		if (type == char.class) {
+			return '\0';
+		}
+		if (type == long.class) {
+			return 0L;
+		}
+		if (type == float.class) {
+			return 0F;
+		}
+		if (type == double.class) {
+			return 0D;
+		}
+		if (type == byte.class) {
+			return (byte) 0;
+		}
+		if (type == short.class) {
+			return (short) 0;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,269 @@
+package me.ialistannen.bukkitutil.commandsystem.testkit;
+
+import me.ialistannen.bukkitutil.commandsystem.util.CommandSystemUtil;
+import me.ialistannen.bukkitutil.commandsystem.util.ServerFacade;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+/**
+ * A {@link ServerFacade} keeping the registered commands in memory.
+ * <p>
+ * Use {@link #install()} to make the command system use it, then {@link #dispatch(CommandSender, String)} and
+ * {@link #tabComplete(CommandSender, String)} to simulate what a player types. {@link #join(FakeSender)} and
+ * {@link #quit(FakeSender)} change the online players and call the join and quit handlers of registered listeners.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class FakeServerFacade implements ServerFacade {
+
+	private final Logger logger = Logger.getLogger("CommandSystem-TestKit");
+	private final Map<String, RegisteredCommand> commands = new ConcurrentHashMap<>();
+	private final Set<Player> onlinePlayers = Collections.synchronizedSet(new LinkedHashSet<>());
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Creates a facade and makes the command system use it
+	 *
+	 * @return The installed facade
+	 *
+	 * @see CommandSystemUtil#setServerFacade(ServerFacade)
+	 */
+	@Nonnull
+	public static FakeServerFacade install() {
+		FakeServerFacade facade = new FakeServerFacade();
+		CommandSystemUtil.setServerFacade(facade);
+		return facade;
+	}
+
+	/**
+	 * Creates a plugin that only knows its name and logger. Enough to register commands.
+	 *
+	 * @param name The name of the plugin
+	 *
+	 * @return The fake plugin
+	 */
+	@Nonnull
+	public Plugin createPlugin(@Nonnull String name) {
+		Logger pluginLogger = Logger.getLogger(name);
+		return (Plugin) Proxy.newProxyInstance(FakeServerFacade.class.getClassLoader(), new Class<?>[]{Plugin.class},
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+						case "getName":
+						case "toString":
+							return name;
+						case "getLogger":
+							return pluginLogger;
+						case "isEnabled":
+							return true;
+						case "equals":
+							return proxy == args[0];
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						default:
+							return FakeSender.defaultValue(method.getReturnType());
+					}
+				});
+	}
+
+	@Nonnull
+	@Override
+	public Logger getLogger() {
+		return logger;
+	}
+
+	@Override
+	public boolean registerCommand(@Nonnull Plugin plugin, @Nonnull String name, @Nonnull CommandExecutor executor,
+	                               @Nonnull TabCompleter completer) {
+		String key = name.toLowerCase(Locale.ROOT).trim();
+		return commands.putIfAbsent(key, new RegisteredCommand(plugin, new FakeCommand(key), executor, completer))
+				== null;
+	}
+
+	@Override
+	public boolean unregisterCommand(@Nonnull Plugin plugin, @Nonnull String name) {
+		String key = name.toLowerCase(Locale.ROOT).trim();
+		RegisteredCommand command = commands.get(key);
+		return command != null && command.plugin == plugin && commands.remove(key, command);
+	}
+
+	@Nonnull
+	@Override
+	public Collection<? extends Player> getOnlinePlayers() {
+		synchronized (onlinePlayers) {
+			return Collections.unmodifiableList(new ArrayList<>(onlinePlayers));
+		}
+	}
+
+	@Override
+	public void registerListener(@Nonnull Plugin plugin, @Nonnull Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Lets a fake player join and calls the {@link PlayerJoinEvent} handlers
+	 *
+	 * @param player The fake player
+	 */
+	public void join(@Nonnull FakeSender player) {
+		player.setOnline(true);
+		onlinePlayers.add(player.asPlayer());
+		callEvent(new PlayerJoinEvent(player.asPlayer(), null));
+	}
+
+	/**
+	 * Calls the {@link PlayerQuitEvent} handlers and lets the fake player leave
+	 *
+	 * @param player The fake player
+	 */
+	public void quit(@Nonnull FakeSender player) {
+		callEvent(new PlayerQuitEvent(player.asPlayer(), null));
+		onlinePlayers.remove(player.asPlayer());
+		player.setOnline(false);
+	}
+
+	/**
+	 * Calls all handlers of registered listeners, that accept the event. Ignores the priorities.
+	 *
+	 * @param event The event to call
+	 */
+	public void callEvent(@Nonnull Event event) {
+		for (Listener listener : listeners) {
+			for (Method method : listener.getClass().getMethods()) {
+				if (!method.isAnnotationPresent(EventHandler.class) || method.getParameterCount() != 1
+						|| !method.getParameterTypes()[0].isInstance(event)) {
+					continue;
+				}
+				try {
+					method.invoke(listener, event);
+				} catch (IllegalAccessException e) {
+					throw new IllegalStateException("Handler not accessible: " + method, e);
+				} catch (InvocationTargetException e) {
+					throw new IllegalStateException("Handler failed: " + method, e.getCause());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The names of all registered commands. Unmodifiable.
+	 */
+	@Nonnull
+	public Set<String> getRegisteredCommands() {
+		return Collections.unmodifiableSet(commands.keySet());
+	}
+
+	/**
+	 * Executes a command line, like the server would
+	 *
+	 * @param sender      The sender
+	 * @param commandLine The line, with or without the leading slash
+	 *
+	 * @return False if no such command is registered, otherwise the result of the executor
+	 */
+	public boolean dispatch(@Nonnull CommandSender sender, @Nonnull String commandLine) {
+		String[] parts = split(commandLine);
+		RegisteredCommand command = commands.get(parts[0].toLowerCase(Locale.ROOT));
+		if (command == null) {
+			return false;
+		}
+		return command.executor.onCommand(sender, command.command, parts[0],
+				Arrays.copyOfRange(parts, 1, parts.length));
+	}
+
+	/**
+	 * Tab completes a command line, like the server would
+	 *
+	 * @param sender      The sender
+	 * @param commandLine The line, with or without the leading slash. A trailing space starts a new argument.
+	 *
+	 * @return The completions. Empty if no such command is registered, null for all online players.
+	 */
+	public List<String> tabComplete(@Nonnull CommandSender sender, @Nonnull String commandLine) {
+		String[] parts = split(commandLine);
+		RegisteredCommand command = commands.get(parts[0].toLowerCase(Locale.ROOT));
+		if (command == null) {
+			return Collections.emptyList();
+		}
+		return command.completer.onTabComplete(sender, command.command, parts[0],
+				Arrays.copyOfRange(parts, 1, parts.length));
+	}
+
+	/**
+	 * @param commandLine The command line
+	 *
+	 * @return The label followed by the arguments
+	 */
+	private static String[] split(String commandLine) {
+		String line = commandLine.startsWith("/") ? commandLine.substring(1) : commandLine;
+		// -1 keeps the empty argument a trailing space starts
+		return line.split(" ", -1);
+	}
+
+	/**
+	 * A registered command
+	 */
+	private static class RegisteredCommand {
+		private final Plugin plugin;
+		private final Command command;
+		private final CommandExecutor executor;
+		private final TabCompleter completer;
+
+		/**
+		 * @param plugin    The owning plugin
+		 * @param command   The command passed to the executor
+		 * @param executor  The executor
+		 * @param completer The tab completer
+		 */
+		RegisteredCommand(Plugin plugin, Command command, CommandExecutor executor, TabCompleter completer) {
+			this.plugin = plugin;
+			this.command = command;
+			this.executor = executor;
+			this.completer = completer;
+		}
+	}
+
+	/**
+	 * The command object passed to executors and completers
+	 */
+	private static class FakeCommand extends Command {
+
+		/**
+		 * @param name The name of the command
+		 */
+		FakeCommand(String name) {
+			super(name);
+		}
+
+		/**
+		 * Never called, the facade calls the executor itself
+		 */
+		public boolean execute(CommandSender sender, String commandLabel, String[] args) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package me.ialistannen.bukkitutil.commandsystem.util;
+
+import me.ialistannen.bukkitutil.other.CaseFolding;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A BK-Tree, a metric tree over Strings using the (case insensitive) Levenshtein distance.
+ * <p>
+ * Queries only visit the subtrees whose distance to the query can still be within the tolerance, so a lookup in a
+ * few thousand keys only computes a handful of distances.
+ * <p>
+ * Multiple values may share the same key. The tree does not support removal, rebuild it instead.
+ *
+ * @param <T> The type of the values
+ */
+public class BKTree<T> {
+
+	private Node<T> root;
+	private int size;
+
+	/**
+	 * Adds a value
+	 *
+	 * @param key   The key to index it under
+	 * @param value The value
+	 */
+	public void add(@Nonnull String key, @Nonnull T value) {
+		size++;
+		if (root == null) {
+			root = new Node<>(key, value);
+			return;
+		}
+
+		Node<T> current = root;
+		while (true) {
+			int distance = distance(current.key, key);
+			if (distance == 0) {
+				current.values.add(value);
+				return;
+			}
+			Node<T> child = current.children.get(distance);
+			if (child == null) {
+				current.children.put(distance, new Node<>(key, value));
+				return;
+			}
+			current = child;
+		}
+	}
+
+	/**
+	 * Finds the closest values
+	 *
+	 * @param query       The query String
+	 * @param maxDistance The maximum distance a key may have to be included
+	 * @param limit       The maximum amount of keys to return
+	 *
+	 * @return All found matches, closest first. Values sharing a key are returned together.
+	 */
+	@Nonnull
+	public List<Match<T>> search(@Nonnull String query, int maxDistance, int limit) {
+		if (root == null || limit <= 0) {
+			return Collections.emptyList();
+		}
+
+		List<Match<T>> matches = new ArrayList<>();
+		List<Node<T>> toVisit = new ArrayList<>();
+		toVisit.add(root);
+
+		while (!toVisit.isEmpty()) {
+			Node<T> node = toVisit.remove(toVisit.size() - 1);
+			int distance = distance(node.key, query);
+
+			if (distance <= maxDistance) {
+				matches.add(new Match<>(node.key, node.values, distance));
+			}
+
+			for (Map.Entry<Integer, Node<T>> entry : node.children.entrySet()) {
+				// triangle inequality: only these can be in range
+				if (Math.abs(entry.getKey() - distance) <= maxDistance) {
+					toVisit.add(entry.getValue());
+				}
+			}
+		}
+
+		matches.sort(Comparator.comparingInt(Match::getDistance));
+		return matches.size() > limit ? matches.subList(0, limit) : matches;
+	}
+
+	/**
+	 * Returns the amount of values in this tree
+	 *
+	 * @return The amount of added values
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Computes the case insensitive Levenshtein distance between the two Strings
+	 *
+	 * @param first  The first String
+	 * @param second The second String
+	 *
+	 * @return The edit distance
+	 */
+	public static int distance(@Nonnull String first, @Nonnull String second) {
+		int[] previous = new int[second.length() + 1];
+		int[] current = new int[second.length() + 1];
+
+		for (int i = 0; i < previous.length; i++) {
+			previous[i] = i;
+		}
+
+		for (int i = 1; i <= first.length(); i++) {
+			current[0] = i;
+			char firstChar = CaseFolding.fold(first.charAt(i - 1));
+
+			for (int j = 1; j <= second.length(); j++) {
+				int cost = firstChar == CaseFolding.fold(second.charAt(j - 1)) ? 0 : 1;
+				current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+			}
+
+			int[] tmp = previous;
+			previous = current;
+			current = tmp;
+		}
+
+		return previous[second.length()];
+	}
+
+	/**
+	 * A node in the tree
+	 *
+	 * @param <T> The type of the values
+	 */
+	private static class Node<T> {
+		private final String key;
+		private final List<T> values = new ArrayList<>(1);
+		private final Map<Integer, Node<T>> children = new HashMap<>();
+
+		/**
+		 * @param key   The key of the node
+		 * @param value The first value
+		 */
+		Node(String key, T value) {
+			this.key = key;
+			this.values.add(value);
+		}
+	}
+
+	/**
+	 * A match of a search
+	 *
+	 * @param <T> The type of the values
+	 */
+	public static class Match<T> {
+		private final String key;
+		private final List<T> values;
+		private final int distance;
+
+		/**
+		 * @param key      The key that matched
+		 * @param values   The values stored under the key
+		 * @param distance The distance to the query
+		 */
+		private Match(String key, List<T> values, int distance) {
+			this.key = key;
+			this.values = values;
+			this.distance = distance;
+		}
+
+		/**
+		 * Returns the matched key
+		 *
+		 * @return The key that matched
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * Returns the values stored under the key
+		 *
+		 * @return The values. Unmodifiable.
+		 */
+		public List<T> getValues() {
+			return Collections.unmodifiableList(values);
+		}
+
+		/**
+		 * Returns the edit distance to the query
+		 *
+		 * @return The distance to the query
+		 */
+		public int getDistance() {
+			return distance;
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package me.ialistannen.bukkitutil.commandsystem.util;
+
+import me.ialistannen.bukkitutil.commandsystem.PluginMain;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandMap;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.command.SimpleCommandMap;
+import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@link ServerFacade} of a running Bukkit server. Registers the commands in the server's command map using
+ * reflection.
+ */
+public class BukkitServerFacade implements ServerFacade {
+
+	// both are final fields of the server, so they are looked up once
+	private volatile CommandMap commandMap;
+	private volatile Map<String, Command> knownCommands;
+
+	@Nonnull
+	@Override
+	public Logger getLogger() {
+		PluginMain plugin = PluginMain.getInstance();
+		return plugin == null ? Bukkit.getLogger() : plugin.getLogger();
+	}
+
+	@Override
+	public boolean registerCommand(@Nonnull Plugin plugin, @Nonnull String name, @Nonnull CommandExecutor executor,
+	                               @Nonnull TabCompleter completer) {
+
+		PluginCommand command = getCommand(name, plugin);
+
+		if (command == null) {
+			return false;
+		}
+
+		command.setExecutor(executor);
+		command.setTabCompleter(completer);
+
+		CommandMap map = getCommandMap();
+
+		return map != null && map.register(plugin.getName(), command);
+
+	}
+
+	@Override
+	public boolean unregisterCommand(@Nonnull Plugin plugin, @Nonnull String name) {
+		Command command;
+
+		SimpleCommandMap map = (SimpleCommandMap) getCommandMap();
+
+		if (map == null) {
+			return false;
+		}
+
+		Map<String, Command> commands = getKnownCommands(map);
+
+		if (commands == null) {
+			return false;
+		}
+
+		command = commands.remove(plugin.getName().toLowerCase().trim() + ":" + name.toLowerCase().trim());
+		if (command == null) {
+			command = commands.remove(name.toLowerCase().trim());
+		} else {
+			commands.remove(name.toLowerCase().trim());
+		}
+
+		return command != null && command.unregister(map);
+	}
+
+	@Nonnull
+	@Override
+	public Collection<? extends Player> getOnlinePlayers() {
+		return Bukkit.getOnlinePlayers();
+	}
+
+	@Override
+	public void registerListener(@Nonnull Plugin plugin, @Nonnull Listener listener) {
+		Bukkit.getPluginManager().registerEvents(listener, plugin);
+	}
+
+
+	/**
+	 * Gets the used {@link CommandMap}
+	 *
+	 * @return The {@link CommandMap}
+	 */
+	private
+	@Nullable
+	CommandMap getCommandMap() {
+		CommandMap commandMap = this.commandMap;
+		if (commandMap == null) {
+			commandMap = (CommandMap) ReflectionUtil.getInstanceField(Bukkit.getServer(), "commandMap");
+			if (commandMap == null) {
+				getLogger().log(Level.WARNING, "Can't get server command map.");
+			}
+			this.commandMap = commandMap;
+		}
+		return commandMap;
+	}
+
+	/**
+	 * Gets the registered commands of the {@link CommandMap}
+	 *
+	 * @param map The command map
+	 *
+	 * @return The map of the registered commands, by label
+	 */
+	private
+	@Nullable
+	Map<String, Command> getKnownCommands(SimpleCommandMap map) {
+		Map<String, Command> knownCommands = this.knownCommands;
+		if (knownCommands == null) {
+			@SuppressWarnings("unchecked")
+			Map<String, Command> commands = (Map<String, Command>) ReflectionUtil.getInstanceField(map,
+					"knownCommands");
+			if (commands == null) {
+				getLogger().log(Level.WARNING, "Can't get known commands map.");
+			}
+			knownCommands = commands;
+			this.knownCommands = knownCommands;
+		}
+		return knownCommands;
+	}
+
+	/**
+	 * Gets a plugin command
+	 *
+	 * @param name   The name of the command
+	 * @param plugin The owning plugin
+	 *
+	 * @return The {@link PluginCommand}
+	 */
+	private
+	@Nullable
+	PluginCommand getCommand(String name, Plugin plugin) {
+		try {
+			Constructor<PluginCommand> constructor = PluginCommand.class
+					.getDeclaredConstructor(String.class, Plugin.class);
+
+			constructor.setAccessible(true);
+
+			return constructor.newInstance(name, plugin);
+		} catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException
+				e) {
+			getLogger().log(Level.WARNING, "Can't get plugin command.", e);
+		}
+
+		return null;
+	}
+}
@@ -1,23 +1,13 @@
 package me.ialistannen.bukkitutil.commandsystem.util;
 
-import me.ialistannen.bukkitutil.commandsystem.PluginMain;
-import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
-import org.bukkit.command.CommandMap;
-import org.bukkit.command.PluginCommand;
-import org.bukkit.command.SimpleCommandMap;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.plugin.Plugin;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.meta.When;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.Map;
-import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -26,6 +16,8 @@ import java.util.stream.IntStream;
  */
 public class CommandSystemUtil {
 
+	private static volatile ServerFacade serverFacade = new BukkitServerFacade();
+
 	/**
 	 * Colors the input
 	 *
@@ -52,6 +44,26 @@ public class CommandSystemUtil {
 	}
 
 
+	/**
+	 * Sets the facade to the server
+	 *
+	 * @param facade The facade. Null to use the Bukkit server again.
+	 */
+	@SuppressWarnings("unused")
+	public static void setServerFacade(@Nullable ServerFacade facade) {
+		serverFacade = facade == null ? new BukkitServerFacade() : facade;
+	}
+
+	/**
+	 * Returns the facade to the server
+	 *
+	 * @return The facade in use. Talks to Bukkit, unless another one was set.
+	 */
+	@Nonnull
+	public static ServerFacade getServerFacade() {
+		return serverFacade;
+	}
+
 	/**
 	 * Registers a command at runtime
 	 *
@@ -61,23 +73,12 @@ public class CommandSystemUtil {
 	 * @param completer The TabCompleter for the command
 	 *
 	 * @return True if it was registered
+	 *
+	 * @see ServerFacade#registerCommand(Plugin, String, CommandExecutor, TabCompleter)
 	 */
 	public static boolean registerCommand(Plugin plugin, String name, CommandExecutor executor, TabCompleter
 			completer) {
-
-		PluginCommand command = getCommand(name, plugin);
-
-		if (command == null) {
-			return false;
-		}
-
-		command.setExecutor(executor);
-		command.setTabCompleter(completer);
-
-		CommandMap map = getCommandMap();
-
-		return map != null && map.register(plugin.getName(), command);
-
+		return serverFacade.registerCommand(plugin, name, executor, completer);
 	}
 
 	/**
@@ -87,75 +88,10 @@ public class CommandSystemUtil {
 	 * @param name   The name of the command
 	 *
 	 * @return True if it was unregistered
-	 */
-	public static boolean unregisterCommand(Plugin plugin, String name) {
-		Command command;
-
-		SimpleCommandMap map = (SimpleCommandMap) getCommandMap();
-
-		if (map == null) {
-			return false;
-		}
-
-		@SuppressWarnings("unchecked")
-		Map<String, Command> commands = (Map<String, Command>) ReflectionUtil.getInstanceField(map, "knownCommands");
-
-
-		if (commands == null) {
-			PluginMain.getInstance().getLogger().log(Level.WARNING, "Can't get known commands map.");
-			return false;
-		}
-
-		command = commands.remove(plugin.getName().toLowerCase().trim() + ":" + name.toLowerCase().trim());
-		if (command == null) {
-			command = commands.remove(name.toLowerCase().trim());
-		} else {
-			commands.remove(name.toLowerCase().trim());
-		}
-
-		return command != null && command.unregister(map);
-	}
-
-
-	/**
-	 * Gets the used {@link CommandMap}
-	 *
-	 * @return The {@link CommandMap}
-	 */
-	private static
-	@Nullable
-	CommandMap getCommandMap() {
-		CommandMap commandMap = (CommandMap) ReflectionUtil.getInstanceField(Bukkit.getServer(), "commandMap");
-		if (commandMap == null) {
-			PluginMain.getInstance().getLogger().log(Level.WARNING, "Can't get server command map.");
-		}
-		return commandMap;
-	}
-
-	/**
-	 * Gets a plugin command
-	 *
-	 * @param name   The name of the command
-	 * @param plugin The owning plugin
 	 *
-	 * @return The {@link PluginCommand}
+	 * @see ServerFacade#unregisterCommand(Plugin, String)
 	 */
-	private static
-	@Nullable
-	PluginCommand getCommand(String name, Plugin plugin) {
-		try {
-			Constructor<PluginCommand> constructor = PluginCommand.class
-					.getDeclaredConstructor(String.class, Plugin.class);
-
-			constructor.setAccessible(true);
-
-			return constructor.newInstance(name, plugin);
-		} catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException
-				e) {
-			PluginMain.getInstance().getLogger().log(Level.WARNING, "Can't get plugin command.", e);
-		}
-
-		return null;
+	public static boolean unregisterCommand(Plugin plugin, String name) {
+		return serverFacade.unregisterCommand(plugin, name);
 	}
-
 }
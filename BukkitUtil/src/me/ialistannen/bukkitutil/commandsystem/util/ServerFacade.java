@@ -0,0 +1,67 @@
+package me.ialistannen.bukkitutil.commandsystem.util;
+
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.logging.Logger;
+
+/**
+ * Everything the command system needs from the server.
+ * <p>
+ * The default one talks to Bukkit. Replace it with {@link CommandSystemUtil#setServerFacade(ServerFacade)} to use the
+ * command system without a running server.
+ */
+public interface ServerFacade {
+
+	/**
+	 * Returns the logger for problems of the command system
+	 *
+	 * @return The logger
+	 */
+	@Nonnull
+	Logger getLogger();
+
+	/**
+	 * Registers a command at runtime
+	 *
+	 * @param plugin    The owning plugin
+	 * @param name      The name of the command
+	 * @param executor  The executor for the command
+	 * @param completer The TabCompleter for the command
+	 *
+	 * @return True if it was registered
+	 */
+	boolean registerCommand(@Nonnull Plugin plugin, @Nonnull String name, @Nonnull CommandExecutor executor,
+	                        @Nonnull TabCompleter completer);
+
+	/**
+	 * Unregisters a command at runtime
+	 *
+	 * @param plugin The owning plugin
+	 * @param name   The name of the command
+	 *
+	 * @return True if it was unregistered
+	 */
+	boolean unregisterCommand(@Nonnull Plugin plugin, @Nonnull String name);
+
+	/**
+	 * Returns the players currently online
+	 *
+	 * @return The online players
+	 */
+	@Nonnull
+	Collection<? extends Player> getOnlinePlayers();
+
+	/**
+	 * Registers the event handlers of a listener
+	 *
+	 * @param plugin   The owning plugin
+	 * @param listener The listener
+	 */
+	void registerListener(@Nonnull Plugin plugin, @Nonnull Listener listener);
+}
@@ -0,0 +1,190 @@
+package me.ialistannen.bukkitutil.other;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Compares strings ignoring the case, without creating lower case copies of them.
+ * <p>
+ * Folding a char is the same {@link String#regionMatches(boolean, int, String, int, int)} does, so
+ * {@link #fold(String)}ed strings compare like the ignore case methods here. Fold strings that are checked often,
+ * like keywords, once and use the "folded" methods for them.
+ * <p>
+ * The "ascii" methods only fold 'A' to 'Z', like a regex with {@link java.util.regex.Pattern#CASE_INSENSITIVE} but
+ * without {@link java.util.regex.Pattern#UNICODE_CASE}. Every other char only matches itself, so e.g. the long s
+ * or the Kelvin sign don't match an ASCII 's' or 'k'.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CaseFolding {
+
+	/**
+	 * Folds a single char
+	 *
+	 * @param c The char to fold
+	 *
+	 * @return The folded char
+	 */
+	public static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	/**
+	 * Folds a string
+	 *
+	 * @param string The string to fold
+	 *
+	 * @return The folded string. The same instance, if it already was folded.
+	 */
+	@NotNull
+	public static String fold(@NotNull String string) {
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (fold(c) != c) {
+				char[] chars = string.toCharArray();
+				for (int j = i; j < chars.length; j++) {
+					chars[j] = fold(chars[j]);
+				}
+				return new String(chars);
+			}
+		}
+		return string;
+	}
+
+	/**
+	 * Checks whether a string starts with another one, ignoring the case
+	 *
+	 * @param string The string to check
+	 * @param prefix The prefix
+	 *
+	 * @return True if the string starts with the prefix
+	 */
+	public static boolean startsWithIgnoreCase(@NotNull String string, @NotNull String prefix) {
+		return string.regionMatches(true, 0, prefix, 0, prefix.length());
+	}
+
+	/**
+	 * Checks whether a string contains another one, ignoring the case
+	 *
+	 * @param string The string to search in
+	 * @param part   The string to search for
+	 *
+	 * @return True if the string contains the part
+	 */
+	public static boolean containsIgnoreCase(@NotNull String string, @NotNull String part) {
+		if (part.isEmpty()) {
+			return true;
+		}
+		char first = fold(part.charAt(0));
+		int last = string.length() - part.length();
+		for (int i = 0; i <= last; i++) {
+			if (fold(string.charAt(i)) == first && string.regionMatches(true, i, part, 0, part.length())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a folded string starts with another one, ignoring the case. Only the prefix is folded, char by
+	 * char.
+	 *
+	 * @param folded The folded string to check
+	 * @param prefix The prefix. Needn't be folded.
+	 *
+	 * @return True if the string starts with the prefix
+	 *
+	 * @see #fold(String)
+	 */
+	public static boolean foldedStartsWith(@NotNull String folded, @NotNull String prefix) {
+		if (prefix.length() > folded.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (folded.charAt(i) != fold(prefix.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Folds a single char, if it is an ASCII letter
+	 *
+	 * @param c The char to fold
+	 *
+	 * @return The lower case char for 'A' to 'Z', the char itself for all others
+	 */
+	public static char foldAscii(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	/**
+	 * Folds the ASCII letters of a string
+	 *
+	 * @param string The string to fold
+	 *
+	 * @return The folded string. The same instance, if it already was folded.
+	 */
+	@NotNull
+	public static String foldAscii(@NotNull String string) {
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (foldAscii(c) != c) {
+				char[] chars = string.toCharArray();
+				for (int j = i; j < chars.length; j++) {
+					chars[j] = foldAscii(chars[j]);
+				}
+				return new String(chars);
+			}
+		}
+		return string;
+	}
+
+	/**
+	 * Checks whether a string starts with an {@link #foldAscii(String) ASCII folded} prefix, ignoring the case of
+	 * the ASCII letters only
+	 *
+	 * @param string       The string to check. Needn't be folded.
+	 * @param foldedPrefix The folded prefix
+	 *
+	 * @return True if the string starts with the prefix
+	 */
+	public static boolean asciiFoldedStartsWith(@NotNull String string, @NotNull String foldedPrefix) {
+		if (foldedPrefix.length() > string.length()) {
+			return false;
+		}
+		for (int i = 0; i < foldedPrefix.length(); i++) {
+			if (foldAscii(string.charAt(i)) != foldedPrefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a string equals an {@link #foldAscii(String) ASCII folded} one, ignoring the case of the ASCII
+	 * letters only
+	 *
+	 * @param folded The folded string
+	 * @param other  The string to compare with. Needn't be folded.
+	 *
+	 * @return True if they are equal, ignoring the case of the ASCII letters
+	 */
+	public static boolean asciiFoldedEquals(@NotNull String folded, @NotNull String other) {
+		return folded.length() == other.length() && asciiFoldedStartsWith(other, folded);
+	}
+
+	/**
+	 * Checks whether a folded string equals another one, ignoring the case. Only the other one is folded, char by
+	 * char.
+	 *
+	 * @param folded The folded string
+	 * @param other  The string to compare with. Needn't be folded.
+	 *
+	 * @return True if they are equal, ignoring the case
+	 *
+	 * @see #fold(String)
+	 */
+	public static boolean foldedEquals(@NotNull String folded, @NotNull String other) {
+		return folded.length() == other.length() && foldedStartsWith(folded, other);
+	}
+}
@@ -344,7 +344,7 @@ public class Pager {
 		/**
 		 * The string is contained, ignoring case
 		 */
-		CONTAINS_IGNORE_CASE((test, pattern) -> test.toLowerCase().contains(pattern.toLowerCase())),
+		CONTAINS_IGNORE_CASE(CaseFolding::containsIgnoreCase),
 		/**
 		 * The strings are equal
 		 */
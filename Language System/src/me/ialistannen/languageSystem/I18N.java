@@ -9,6 +9,7 @@ import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -17,15 +18,19 @@ import java.text.MessageFormat;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 
 /**
  * A class utilizing I18N to fulfill the {@link MessageProvider} contract
@@ -55,6 +60,9 @@ public class I18N implements MessageProvider {
 	private final Map<String, ResourceBundle> fileBundles = new LinkedHashMap<>();
 
 	private final Map<String, MessageFormat> formatCache = new HashMap<>();
+	private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
+	// hash of the raw bundles, computed again whenever they are replaced
+	private volatile long translationHash;
 
 	private FileClassLoader fileClassLoader;
 	private ClassLoader defaultClassLoader;
@@ -84,12 +92,20 @@ public class I18N implements MessageProvider {
 		this.defaultPackage = defaultPackage;
 		this.logger = logger;
 
-		updateBundles();
+		updateBundlesSilently();
 
 		setLanguage(locale);
 	}
 
 	private void updateBundles() {
+		updateBundlesSilently();
+		reloadListeners.forEach(Runnable::run);
+	}
+
+	/**
+	 * Reads the bundles again, without notifying the reload listeners
+	 */
+	private void updateBundlesSilently() {
 		formatCache.clear();
 		if (fileClassLoader != null) {
 			ResourceBundle.clearCache(fileClassLoader);
@@ -102,6 +118,7 @@ public class I18N implements MessageProvider {
 					defaultClassLoader));
 			fileBundles.put(string, ResourceBundle.getBundle(string, getLanguage(), fileClassLoader));
 		}
+		translationHash = hashBundles();
 	}
 
 	@Override
@@ -116,6 +133,7 @@ public class I18N implements MessageProvider {
 					defaultClassLoader));
 			fileBundles.put(string, ResourceBundle.getBundle(string, getLanguage(), fileClassLoader));
 		}
+		translationHash = hashBundles();
 		return getLanguage();
 	}
 
@@ -276,6 +294,50 @@ public class I18N implements MessageProvider {
 		updateBundles();
 	}
 
+	@Override
+	public void addReloadListener(@Nonnull Runnable listener) {
+		reloadListeners.add(listener);
+	}
+
+	@Override
+	public void removeReloadListener(@Nonnull Runnable listener) {
+		reloadListeners.remove(listener);
+	}
+
+	@Override
+	public long getTranslationHash() {
+		return translationHash;
+	}
+
+	/**
+	 * Hashes the raw contents of the current bundles
+	 *
+	 * @return The hash of every key and value in every bundle
+	 */
+	private long hashBundles() {
+		CRC32 crc = new CRC32();
+		for (String category : categories) {
+			hashBundle(crc, fileBundles.get(category));
+			hashBundle(crc, packageBundles.get(category));
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * @param crc    The checksum to add the bundle to
+	 * @param bundle The bundle to add. Its keys are sorted, as the order they are stored in may differ.
+	 */
+	private static void hashBundle(CRC32 crc, ResourceBundle bundle) {
+		for (String key : new TreeSet<>(bundle.keySet())) {
+			crc.update(key.getBytes(StandardCharsets.UTF_8));
+			crc.update(0);
+			crc.update(String.valueOf(bundle.getObject(key)).getBytes(StandardCharsets.UTF_8));
+			crc.update(0);
+		}
+		// separates the bundles, so a key can't move from one to the other unnoticed
+		crc.update(1);
+	}
+
 	/**
 	 * Reloads the language files in the !folder!
 	 */
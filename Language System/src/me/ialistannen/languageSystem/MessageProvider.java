@@ -73,4 +73,38 @@ public interface MessageProvider {
 	 */
 	@SuppressWarnings("unused")
 	boolean containsKey(String key);
+
+	/**
+	 * Adds a listener called after the translations were reloaded, so cached translations can be dropped.
+	 * <p>
+	 * Changing the language doesn't call it, the translations of the old one are still valid.
+	 *
+	 * @param listener The listener to call
+	 */
+	@SuppressWarnings("unused")
+	default void addReloadListener(Runnable listener) {
+		// translations that never change need no listener
+	}
+
+	/**
+	 * Removes a listener added by {@link #addReloadListener(Runnable)}
+	 *
+	 * @param listener The listener to remove
+	 */
+	@SuppressWarnings("unused")
+	default void removeReloadListener(Runnable listener) {
+		// translations that never change have no listeners
+	}
+
+	/**
+	 * Returns a hash of all translations in the current language, to notice changed translations. It is only computed
+	 * when the translations are loaded, so calling it is cheap.
+	 *
+	 * @return The hash. Changes, if a translation of the current language changes.
+	 */
+	@SuppressWarnings("unused")
+	default long getTranslationHash() {
+		// translations that never change have a constant hash
+		return 0;
+	}
 }